@@ -0,0 +1,88 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Distance computations: {@link RewardsService#getDistance(Location, Location)} and the spatial
+ * index queries used by reward calculation and nearby attractions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+	private static final int LOCATION_COUNT = 1024;
+
+	private ExecutorService executor;
+	private RewardsService rewardsService;
+	private AttractionIndex attractionIndex;
+	private List<Attraction> attractions;
+	private Location[] locations;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+		rewardsService = new RewardsService(new StubGpsUtil(0), new StubRewardCentral(0), executor);
+		attractionIndex = rewardsService.getAttractionIndex();
+		attractions = attractionIndex.getAttractions();
+
+		SplittableRandom random = new SplittableRandom(42);
+		locations = new Location[LOCATION_COUNT];
+		for (int i = 0; i < LOCATION_COUNT; i++) {
+			locations[i] = new Location(random.nextDouble(-85, 85), random.nextDouble(-180, 180));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public double getDistance() {
+		int i = next++ & (LOCATION_COUNT - 1);
+		return rewardsService.getDistance(attractions.get(i % attractions.size()), locations[i]);
+	}
+
+	@Benchmark
+	public void forEachWithinProximityBuffer(Blackhole blackhole) {
+		Location location = locations[next++ & (LOCATION_COUNT - 1)];
+		attractionIndex.forEachWithin(location.latitude, location.longitude, 10,
+				(attraction, distance) -> blackhole.consume(distance));
+	}
+
+	@Benchmark
+	public void forEachNearestFive(Blackhole blackhole) {
+		Location location = locations[next++ & (LOCATION_COUNT - 1)];
+		attractionIndex.forEachNearest(location.latitude, location.longitude, 5,
+				(attraction, distance) -> blackhole.consume(distance));
+	}
+
+}
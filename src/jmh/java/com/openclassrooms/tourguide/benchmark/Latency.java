@@ -0,0 +1,20 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed latency of the stand-ins, replacing the random sleeps of the real libraries.
+ */
+final class Latency {
+
+	private Latency() {
+	}
+
+	static void pause(long micros) {
+		if (micros > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+	}
+
+}
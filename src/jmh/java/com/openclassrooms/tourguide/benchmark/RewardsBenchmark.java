@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Reward calculation for a user with new visited locations, and reading back a user's rewards.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RewardsBenchmark {
+
+	@State(Scope.Thread)
+	public static class CalculateRewardsState {
+		/** Latency of each RewardCentral call, the real library sleeps between 1 and 1000 ms. */
+		@Param({ "0", "1000" })
+		long rewardLatencyMicros;
+
+		/** Visited locations added since the previous calculation, each one at an attraction. */
+		@Param({ "1", "10" })
+		int newLocations;
+
+		private ExecutorService executor;
+		private RewardsService rewardsService;
+		private List<Attraction> attractions;
+		private int next;
+		User user;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+			rewardsService = new RewardsService(new StubGpsUtil(0), new StubRewardCentral(rewardLatencyMicros), executor);
+			attractions = rewardsService.getAttractionIndex().getAttractions();
+		}
+
+		// a new user every time, so its reward points are never cached yet
+		@Setup(Level.Invocation)
+		public void newUser() {
+			user = new User(UUID.randomUUID(), "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+			for (int i = 0; i < newLocations; i++) {
+				Attraction attraction = attractions.get(next++ % attractions.size());
+				user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			executor.shutdown();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class UserRewardsState {
+		@Param({ "5", "26" })
+		int rewardCount;
+
+		User user;
+
+		@Setup
+		public void setUp() {
+			user = new User(UUID.randomUUID(), "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+			List<Attraction> attractions = StubGpsUtil.attractions();
+			for (int i = 0; i < rewardCount; i++) {
+				Attraction attraction = attractions.get(i % attractions.size());
+				VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attraction, new Date());
+				user.addUserReward(new UserReward(visitedLocation, attraction, i));
+			}
+		}
+	}
+
+	@Benchmark
+	public User calculateRewards(CalculateRewardsState state) {
+		state.rewardsService.calculateRewards(state.user);
+		return state.user;
+	}
+
+	@Benchmark
+	public List<UserReward> getUserRewards(UserRewardsState state) {
+		return state.user.getUserRewards();
+	}
+
+	@Benchmark
+	public long getRewardPointsTotal(UserRewardsState state) {
+		return state.user.getRewardPointsTotal();
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Deterministic stand-in for {@link GpsUtil}: no rate limiter, a fixed latency per call, the real
+ * attraction catalog loaded once, and user locations drawn from the seed, the user id and how many
+ * times that user was located before, so the locations do not depend on how threads interleave.
+ * A new stand-in, as built in each trial's setup, starts every user over.
+ */
+public class StubGpsUtil extends GpsUtil {
+	private static final List<Attraction> ATTRACTIONS = loadAttractions();
+
+	private final long latencyMicros;
+	private final long seed;
+	private final Map<UUID, AtomicLong> callsByUser = new ConcurrentHashMap<>();
+
+	public StubGpsUtil(long latencyMicros) {
+		this(latencyMicros, 42);
+	}
+
+	public StubGpsUtil(long latencyMicros, long seed) {
+		this.latencyMicros = latencyMicros;
+		this.seed = seed;
+	}
+
+	@Override
+	public VisitedLocation getUserLocation(UUID userId) {
+		Latency.pause(latencyMicros);
+		long call = callsByUser.computeIfAbsent(userId, id -> new AtomicLong()).getAndIncrement();
+		SplittableRandom random = new SplittableRandom(
+				seed ^ userId.getMostSignificantBits() ^ Long.rotateLeft(userId.getLeastSignificantBits(), 17)
+						^ call * 0x9E3779B97F4A7C15L);
+		Location location = new Location(random.nextDouble(-85.05112878, 85.05112878), random.nextDouble(-180, 180));
+		return new VisitedLocation(userId, location, new Date());
+	}
+
+	@Override
+	public List<Attraction> getAttractions() {
+		Latency.pause(latencyMicros);
+		return new ArrayList<>(ATTRACTIONS);
+	}
+
+	/**
+	 * @return The attractions handed out by every stand-in, each keeping the same id across calls.
+	 */
+	public static List<Attraction> attractions() {
+		return ATTRACTIONS;
+	}
+
+	private static List<Attraction> loadAttractions() {
+		// Attraction ids are random on every GpsUtil call, the stand-in hands out the same instances instead
+		return List.copyOf(new GpsUtil().getAttractions());
+	}
+
+}
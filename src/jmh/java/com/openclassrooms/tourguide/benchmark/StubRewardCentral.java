@@ -0,0 +1,24 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.UUID;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Deterministic stand-in for {@link RewardCentral}: a fixed latency per call, and points derived
+ * from the attraction and user ids instead of drawn at random.
+ */
+public class StubRewardCentral extends RewardCentral {
+	private final long latencyMicros;
+
+	public StubRewardCentral(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+		Latency.pause(latencyMicros);
+		return 1 + Math.floorMod(attractionId.hashCode() * 31 + userId.hashCode(), 1000);
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Deterministic stand-in for {@link TripPricer}: a fixed latency per call, and five providers
+ * whose prices only depend on the request.
+ */
+public class StubTripPricer extends TripPricer {
+	private static final int PROVIDER_COUNT = 5;
+
+	private final long latencyMicros;
+
+	public StubTripPricer(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+			int rewardsPoints) {
+		Latency.pause(latencyMicros);
+		List<Provider> providers = new ArrayList<>(PROVIDER_COUNT);
+		for (int i = 0; i < PROVIDER_COUNT; i++) {
+			double price = Math.max(0, (100 + 10 * i) * (adults + children / 2.0) * nightsStay - rewardsPoints);
+			providers.add(new Provider(new UUID(attractionId.getMostSignificantBits(), i), "Provider " + i, price));
+		}
+		return providers;
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.attraction.NearbyAttraction;
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.location.GpsUtilLocationProvider;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import tripPricer.Provider;
+
+/**
+ * The request paths of {@link TourGuideService}: nearby attractions and trip deals for a user who
+ * already has a location and some rewards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TourGuideBenchmark {
+	/** Latency of each TripPricer call, the real library sleeps between 1 and 50 ms. */
+	@Param({ "0", "1000" })
+	long tripPricerLatencyMicros;
+
+	private ExecutorService executor;
+	private TourGuideService tourGuideService;
+	private User user;
+
+	@Setup
+	public void setUp() {
+		InternalTestHelper.setInternalUserNumber(0);
+		executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+		StubGpsUtil gpsUtil = new StubGpsUtil(0);
+		RewardsService rewardsService = new RewardsService(gpsUtil, new StubRewardCentral(0), executor);
+		tourGuideService = new TourGuideService(new GpsUtilLocationProvider(gpsUtil, executor, rewardsService.getMetrics()), rewardsService,
+				new StubTripPricer(tripPricerLatencyMicros));
+		tourGuideService.tracker.stopTracking();
+
+		user = new User(UUID.randomUUID(), "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.817595, -117.922008), new Date()));
+		List<Attraction> attractions = StubGpsUtil.attractions();
+		for (int i = 0; i < 5; i++) {
+			Attraction attraction = attractions.get(i);
+			user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()), attraction, 100));
+		}
+		tourGuideService.addUser(user);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	public List<NearbyAttraction> getNearByAttractions() {
+		return tourGuideService.getNearByAttractions(user);
+	}
+
+	@Benchmark
+	public List<Provider> getTripDeals() {
+		return tourGuideService.getTripDeals(user);
+	}
+
+}
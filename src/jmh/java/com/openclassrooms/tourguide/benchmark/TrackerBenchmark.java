@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.location.GpsUtilLocationProvider;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Throughput of a {@link Tracker} cycle, in users tracked per second: one batch location request
+ * for {@value #USERS} users, then recording each location and calculating the user's rewards.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackerBenchmark {
+	static final int USERS = 1000;
+
+	/** Latency of each GpsUtil call, the real library sleeps between 30 and 100 ms. */
+	@Param({ "0", "50000" })
+	long gpsLatencyMicros;
+
+	/** Latency of each RewardCentral call, the real library sleeps between 1 and 1000 ms. */
+	@Param({ "0", "1000" })
+	long rewardLatencyMicros;
+
+	private ExecutorService executor;
+	private TourGuideService tourGuideService;
+	private List<User> users;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		InternalTestHelper.setInternalUserNumber(USERS);
+		executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+		StubGpsUtil gpsUtil = new StubGpsUtil(gpsLatencyMicros);
+		RewardsService rewardsService = new RewardsService(gpsUtil, new StubRewardCentral(rewardLatencyMicros), executor);
+		tourGuideService = new TourGuideService(new GpsUtilLocationProvider(gpsUtil, executor, rewardsService.getMetrics()), rewardsService,
+				new StubTripPricer(0));
+		// the cycle is driven by the benchmark, not by the Tracker's own schedule
+		tourGuideService.tracker.stopTracking();
+		users = tourGuideService.getAllUsers();
+	}
+
+	// keeps the location history from growing over the whole trial
+	@Setup(Level.Iteration)
+	public void clearHistory() {
+		users.forEach(User::clearVisitedLocations);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executor.shutdown();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(USERS)
+	public void trackingCycle() {
+		tourGuideService.trackUserLocations(users).join();
+	}
+
+}
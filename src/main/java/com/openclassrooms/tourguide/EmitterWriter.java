@@ -0,0 +1,109 @@
+package com.openclassrooms.tourguide;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Writes to one streamed response from the streaming executor, so that the threads producing the
+ * data, tracking threads mostly, only queue it and never block on a slow client.
+ * <p>
+ * Writes are made one at a time in the order they were queued, by at most one streaming thread at
+ * a time. Once {@code capacity} writes are waiting the client is taken as not keeping up: what is
+ * queued is dropped and the response completed, the client being left to reconnect. Once the
+ * client has gone away the remaining writes are dropped.
+ */
+class EmitterWriter {
+	private final ResponseBodyEmitter emitter;
+	private final Write complete;
+	private final Executor executor;
+	private final int capacity;
+	private final Queue<Write> writes = new ConcurrentLinkedQueue<>();
+	// writes queued and not made yet, the one being made included
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private volatile boolean abandoned;
+
+	/**
+	 * @param emitter The response written to.
+	 * @param executor The executor the writes are made from.
+	 * @param capacity The number of writes that may wait for the client.
+	 */
+	EmitterWriter(ResponseBodyEmitter emitter, Executor executor, int capacity) {
+		this.emitter = emitter;
+		this.complete = emitter::complete;
+		this.executor = executor;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Queues a write without blocking.
+	 *
+	 * @param write The write, made with the emitter's own {@code send} methods.
+	 * @return false if the write was dropped: the response is complete, or the client did not keep up.
+	 */
+	boolean write(Write write) {
+		if (closed.get()) {
+			return false;
+		}
+		if (pending.get() >= capacity) {
+			abandoned = true;
+			complete();
+			return false;
+		}
+		enqueue(write);
+		return true;
+	}
+
+	/**
+	 * Completes the response once the writes queued so far are made; later writes are dropped.
+	 */
+	void complete() {
+		if (closed.compareAndSet(false, true)) {
+			enqueue(complete);
+		}
+	}
+
+	private void enqueue(Write write) {
+		writes.add(write);
+		if (pending.getAndIncrement() == 0) {
+			try {
+				executor.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				// only once the executor is shut down
+				drain();
+			}
+		}
+	}
+
+	private void drain() {
+		do {
+			Write write = writes.poll();
+			if (!abandoned || write == complete) {
+				try {
+					write.run();
+				} catch (IOException | IllegalStateException e) {
+					// the client went away, which fails the emitter and runs its callbacks
+					abandoned = true;
+					closed.set(true);
+					emitter.completeWithError(e);
+				}
+			}
+		} while (pending.decrementAndGet() > 0);
+	}
+
+	/**
+	 * One write to the response.
+	 */
+	@FunctionalInterface
+	interface Write {
+		void run() throws IOException;
+	}
+
+}
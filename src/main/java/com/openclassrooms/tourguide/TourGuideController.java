@@ -1,52 +1,249 @@
 package com.openclassrooms.tourguide;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.openclassrooms.tourguide.attraction.NearbyAttraction;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrackingListener;
+import com.openclassrooms.tourguide.user.LocationSummary;
+import com.openclassrooms.tourguide.user.RewardSummary;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
 
+/**
+ * Besides JSON, single-user responses are available as CBOR ({@code Accept: application/cbor}) or
+ * Smile ({@code Accept: application/x-jackson-smile}), and {@code /getLocation} and {@code /getRewards}
+ * return compact projections with {@code compact=true}: coordinates and epoch milliseconds only,
+ * without the ids and the attraction details repeated in every reward. The batch {@code /getLocations}
+ * and {@code /getRewards} streams take {@code compact=true} as well.
+ */
 @RestController
 public class TourGuideController {
+	private static final long TRACKING_EVENTS_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	// events waiting for a client that does not keep up, before its stream is completed
+	private static final int TRACKING_EVENTS_CAPACITY = 256;
+	private static final long BATCH_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
 
 	@Autowired
 	TourGuideService tourGuideService;
 	
+	@Autowired
+	@Qualifier("getStreamingExecutor")
+	Executor streamingExecutor;
+	
     @RequestMapping("/")
     public String index() {
         return "Greetings from TourGuide!";
     }
     
+    /**
+     * Served asynchronously: a user who has to be located first does not hold a request thread
+     * while GpsUtil and RewardCentral answer.
+     */
     @RequestMapping("/getLocation") 
-    public VisitedLocation getLocation(@RequestParam String userName) {
-    	return tourGuideService.getUserLocation(getUser(userName));
+    public CompletableFuture<VisitedLocation> getLocation(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationAsync(getUser(userName));
+    }
+    
+    @RequestMapping(value = "/getLocation", params = "compact=true")
+    public CompletableFuture<LocationSummary> getCompactLocation(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationAsync(getUser(userName)).thenApply(LocationSummary::of);
+    }
+    
+    /**
+     * Streams the user's locations and new rewards as server-sent events while the Tracker records them:
+     * a {@code location} event per visited location, starting with the last known one, and a
+     * {@code rewards} event per group of rewards added. The events are written from the streaming
+     * executor; a client that lets {@value #TRACKING_EVENTS_CAPACITY} of them pile up has its stream
+     * completed and may reconnect. An unknown user gets a 404.
+     */
+    @RequestMapping("/getTrackingEvents")
+    public ResponseEntity<SseEmitter> getTrackingEvents(@RequestParam String userName) {
+    	User user = getUser(userName);
+    	if (user == null) {
+    		return ResponseEntity.notFound().build();
+    	}
+    	SseEmitter emitter = new SseEmitter(TRACKING_EVENTS_TIMEOUT_MILLIS);
+    	EmitterWriter writer = new EmitterWriter(emitter, streamingExecutor, TRACKING_EVENTS_CAPACITY);
+    	Runnable removeListener = tourGuideService.addTrackingListener(user, new TrackingListener() {
+    		@Override
+    		public void locationRecorded(User user, VisitedLocation visitedLocation) {
+    			send(emitter, writer, "location", visitedLocation);
+    		}
+    		
+    		@Override
+    		public void rewardsAdded(User user, List<UserReward> userRewards) {
+    			send(emitter, writer, "rewards", userRewards);
+    		}
+    	});
+    	emitter.onCompletion(removeListener);
+    	emitter.onTimeout(removeListener);
+    	emitter.onError(e -> removeListener.run());
+    	VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+    	if (lastVisitedLocation != null) {
+    		send(emitter, writer, "location", lastVisitedLocation);
+    	}
+    	return ResponseEntity.ok(emitter);
+    }
+    
+    @RequestMapping("/getLocationHistory") 
+    public List<VisitedLocation> getLocationHistory(@RequestParam String userName) {
+    	return tourGuideService.getUserLocationHistory(getUser(userName));
+    }
+    
+    /**
+     * Streams the last known location of many users; see {@link #streamPerUser}.
+     */
+    @RequestMapping("/getLocations")
+    public ResponseEntity<ResponseBodyEmitter> getLocations(@RequestParam(required = false) List<String> userNames,
+    		@RequestParam(required = false) List<UUID> userIds, @RequestParam(defaultValue = "false") boolean compact) {
+    	if (compact) {
+    		return streamPerUser(userNames, userIds,
+    				user -> tourGuideService.getUserLocationAsync(user).thenApply(LocationSummary::of));
+    	}
+    	return streamPerUser(userNames, userIds, tourGuideService::getUserLocationAsync);
     }
     
     @RequestMapping("/getNearbyAttractions") 
-    public List<Map<String, Object>> getNearbyAttractions(@RequestParam String userName) {
-    	return tourGuideService.getNearByAttractions(getUser(userName));
+    public CompletableFuture<List<NearbyAttraction>> getNearbyAttractions(@RequestParam String userName) {
+    	return tourGuideService.getNearByAttractionsAsync(getUser(userName));
+    }
+    
+    /**
+     * Streams the nearby attractions of many users; see {@link #streamPerUser}.
+     */
+    @RequestMapping(value = "/getNearbyAttractions", params = "!userName")
+    public ResponseEntity<ResponseBodyEmitter> getNearbyAttractions(
+    		@RequestParam(required = false) List<String> userNames,
+    		@RequestParam(required = false) List<UUID> userIds) {
+    	return streamPerUser(userNames, userIds, tourGuideService::getNearByAttractionsAsync);
     }
     
     @RequestMapping("/getRewards") 
-    public List<UserReward> getRewards(@RequestParam String userName) {
+    public Collection<UserReward> getRewards(@RequestParam String userName) {
     	return tourGuideService.getUserRewards(getUser(userName));
     }
+    
+    // batch requests go to the stream below, compact or not
+    @RequestMapping(value = "/getRewards", params = { "compact=true", "!userNames", "!userIds" })
+    public List<RewardSummary> getCompactRewards(@RequestParam String userName) {
+    	return toSummaries(tourGuideService.getUserRewards(getUser(userName)));
+    }
+    
+    /**
+     * Streams the rewards of many users; see {@link #streamPerUser}.
+     */
+    @RequestMapping(value = "/getRewards", params = "!userName")
+    public ResponseEntity<ResponseBodyEmitter> getRewards(@RequestParam(required = false) List<String> userNames,
+    		@RequestParam(required = false) List<UUID> userIds, @RequestParam(defaultValue = "false") boolean compact) {
+    	if (compact) {
+    		return streamPerUser(userNames, userIds,
+    				user -> CompletableFuture.completedFuture(toSummaries(tourGuideService.getUserRewards(user))));
+    	}
+    	return streamPerUser(userNames, userIds,
+    			user -> CompletableFuture.completedFuture(tourGuideService.getUserRewards(user)));
+    }
        
     @RequestMapping("/getTripDeals")
-    public List<Provider> getTripDeals(@RequestParam String userName) {
-    	return tourGuideService.getTripDeals(getUser(userName));
+    public CompletableFuture<List<Provider>> getTripDeals(@RequestParam String userName) {
+    	return tourGuideService.getTripDealsAsync(getUser(userName));
     }
     
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
+    
+    private static List<RewardSummary> toSummaries(Collection<UserReward> userRewards) {
+    	List<RewardSummary> rewardSummaries = new ArrayList<>(userRewards.size());
+    	for (UserReward userReward : userRewards) {
+    		rewardSummaries.add(RewardSummary.of(userReward));
+    	}
+    	return rewardSummaries;
+    }
+    
+    /**
+     * Runs the query for every user requested, by name (comma separated or repeated {@code userNames})
+     * and/or by id ({@code userIds}), all of them concurrently. The response is newline-delimited JSON:
+     * one {@link UserResult} per user, written as soon as that user's result is ready, so the lines
+     * come in completion order rather than request order. An unknown user or a failed query gives a
+     * line with an error instead of failing the whole response. The lines are written from the
+     * streaming executor, so the threads completing the queries never wait for the client.
+     */
+    private <T> ResponseEntity<ResponseBodyEmitter> streamPerUser(List<String> userNames, List<UUID> userIds,
+    		Function<User, CompletableFuture<T>> query) {
+    	ResponseBodyEmitter emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MILLIS);
+    	// one line per user requested, nothing to bound
+    	EmitterWriter writer = new EmitterWriter(emitter, streamingExecutor, Integer.MAX_VALUE);
+    	List<CompletableFuture<?>> futures = new ArrayList<>();
+    	if (userNames != null) {
+    		for (String userName : userNames) {
+    			futures.add(queryUser(emitter, writer, userName, null, tourGuideService.getUser(userName), query));
+    		}
+    	}
+    	if (userIds != null) {
+    		for (UUID userId : userIds) {
+    			futures.add(queryUser(emitter, writer, null, userId, tourGuideService.getUser(userId), query));
+    		}
+    	}
+    	CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).whenComplete((ignored, e) -> writer.complete());
+    	return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+    
+    private <T> CompletableFuture<?> queryUser(ResponseBodyEmitter emitter, EmitterWriter writer, String userName,
+    		UUID userId, User user, Function<User, CompletableFuture<T>> query) {
+    	if (user == null) {
+    		sendLine(emitter, writer, UserResult.failure(userName, userId, "Unknown user"));
+    		return CompletableFuture.completedFuture(null);
+    	}
+    	CompletableFuture<T> result;
+    	try {
+    		result = query.apply(user);
+    	} catch (RuntimeException e) {
+    		result = CompletableFuture.failedFuture(e);
+    	}
+    	return result.handle((value, e) -> {
+    		if (e == null) {
+    			sendLine(emitter, writer, UserResult.success(user.getUserName(), user.getUserId(), value));
+    		} else {
+    			Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+    			sendLine(emitter, writer, UserResult.failure(user.getUserName(), user.getUserId(), cause.toString()));
+    		}
+    		return null;
+    	});
+    }
+    
+    // queued by whichever thread completes a user's query; once the client went away the remaining lines are dropped
+    private static void sendLine(ResponseBodyEmitter emitter, EmitterWriter writer, UserResult<?> line) {
+    	writer.write(() -> {
+    		emitter.send(line, MediaType.APPLICATION_JSON);
+    		emitter.send("\n", MediaType.TEXT_PLAIN);
+    	});
+    }
+    
+    // a client gone away or too slow completes the emitter, which removes its listener
+    private static void send(SseEmitter emitter, EmitterWriter writer, String name, Object data) {
+    	SseEmitter.SseEventBuilder event = SseEmitter.event().name(name).data(data);
+    	writer.write(() -> emitter.send(event));
+    }
 }
\ No newline at end of file
@@ -1,14 +1,52 @@
 package com.openclassrooms.tourguide;
 
+import java.util.concurrent.ExecutorService;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
+import com.openclassrooms.tourguide.archive.ArchiveProperties;
+import com.openclassrooms.tourguide.archive.MappedLocationArchive;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionProperties;
+import com.openclassrooms.tourguide.cache.CacheProperties;
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.cache.TripDealCache;
+import com.openclassrooms.tourguide.client.AdaptiveLimiter;
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.client.HedgedClient;
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.location.GpsUtilLocationProvider;
+import com.openclassrooms.tourguide.location.LocationProvider;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.persistence.LogUserStore;
+import com.openclassrooms.tourguide.persistence.StoreProperties;
+import com.openclassrooms.tourguide.persistence.UserStore;
+import com.openclassrooms.tourguide.pipeline.PipelineProperties;
+import com.openclassrooms.tourguide.pipeline.RewardPipeline;
+import com.openclassrooms.tourguide.pipeline.RingBufferRewardPipeline;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.HistoryProperties;
+import com.openclassrooms.tourguide.user.LocationArchive;
+import com.openclassrooms.tourguide.user.LocationRetention;
 
 import gpsUtil.GpsUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import rewardCentral.RewardCentral;
+import tripPricer.TripPricer;
 
 @Configuration
+@EnableConfigurationProperties({ ExecutorProperties.class, CacheProperties.class, AttractionProperties.class,
+		HistoryProperties.class, ArchiveProperties.class, StoreProperties.class, PipelineProperties.class,
+		ClientProperties.class })
 public class TourGuideModule {
 	
 	@Bean
@@ -17,8 +55,34 @@ public class TourGuideModule {
 	}
 	
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public RewardsService getRewardsService(AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache,
+			ExecutorService trackingExecutor, TourGuideMetrics metrics) {
+		return new RewardsService(attractionCatalog, rewardPointsCache, trackingExecutor, metrics);
+	}
+	
+	@Bean(destroyMethod = "close")
+	public AttractionCatalog getAttractionCatalog(AttractionProperties attractionProperties) {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(getGpsUtil());
+		attractionCatalog.scheduleRefresh(attractionProperties.getRefreshInterval());
+		return attractionCatalog;
+	}
+	
+	@Bean
+	public LocationProvider getLocationProvider(@Qualifier("getGpsClient") HedgedClient gpsClient,
+			TourGuideMetrics metrics) {
+		return new GpsUtilLocationProvider(getGpsUtil(), gpsClient, metrics);
+	}
+	
+	@Bean(destroyMethod = "close")
+	public HedgedClient getGpsClient(ExecutorService trackingExecutor, ClientProperties clientProperties,
+			TourGuideMetrics metrics) {
+		return new HedgedClient("gps", trackingExecutor, clientProperties.getGps(), metrics);
+	}
+	
+	@Bean(destroyMethod = "close")
+	public HedgedClient getRewardCentralClient(ExecutorService trackingExecutor, ClientProperties clientProperties,
+			TourGuideMetrics metrics) {
+		return new HedgedClient("rewardCentral", trackingExecutor, clientProperties.getRewardCentral(), metrics);
 	}
 	
 	@Bean
@@ -26,4 +90,79 @@ public class TourGuideModule {
 		return new RewardCentral();
 	}
 	
+	@Bean
+	public TripPricer getTripPricer() {
+		return new TripPricer();
+	}
+	
+	@Bean(destroyMethod = "shutdown")
+	@Primary
+	public ExecutorService getTrackingExecutor(ExecutorProperties executorProperties, TourGuideMetrics metrics) {
+		ExecutorService trackingExecutor = TrackingExecutors.newExecutor(executorProperties);
+		metrics.monitorExecutor(trackingExecutor, "tracking");
+		return trackingExecutor;
+	}
+	
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService getPricingExecutor(ExecutorProperties executorProperties, TourGuideMetrics metrics) {
+		ExecutorService pricingExecutor = TrackingExecutors.newPricingExecutor(executorProperties.getPricing());
+		metrics.monitorExecutor(pricingExecutor, "pricing");
+		return pricingExecutor;
+	}
+	
+	@Bean(destroyMethod = "shutdown")
+	public ExecutorService getStreamingExecutor(ExecutorProperties executorProperties, TourGuideMetrics metrics) {
+		ExecutorService streamingExecutor = TrackingExecutors.newStreamingExecutor(executorProperties.getStreaming());
+		metrics.monitorExecutor(streamingExecutor, "streaming");
+		return streamingExecutor;
+	}
+	
+	@Bean
+	public TripDealCache getTripDealCache(@Qualifier("getPricingExecutor") ExecutorService pricingExecutor,
+			CacheProperties cacheProperties, ClientProperties clientProperties, TourGuideMetrics metrics) {
+		AdaptiveLimiter tripPricerLimiter = new AdaptiveLimiter("tripPricer", pricingExecutor,
+				clientProperties.getTripPricerLimit(), metrics);
+		return new TripDealCache(getTripPricer(), tripPricerLimiter, cacheProperties.getTripDeals(), metrics);
+	}
+	
+	@Bean
+	public RewardPointsCache getRewardPointsCache(@Qualifier("getRewardCentralClient") HedgedClient rewardCentralClient,
+			CacheProperties cacheProperties, TourGuideMetrics metrics) {
+		return new RewardPointsCache(getRewardCentral(), rewardCentralClient, cacheProperties.getRewardPoints(), metrics);
+	}
+	
+	@Bean
+	public LocationRetention getLocationRetention(HistoryProperties historyProperties,
+			ObjectProvider<LocationArchive> locationArchive) {
+		return historyProperties.toRetention(locationArchive.getIfAvailable(() -> LocationArchive.NONE));
+	}
+	
+	@Bean(destroyMethod = "close")
+	@ConditionalOnProperty(prefix = "tourguide.archive", name = "enabled", havingValue = "true")
+	public MappedLocationArchive getLocationArchive(ArchiveProperties archiveProperties) {
+		return new MappedLocationArchive(archiveProperties);
+	}
+	
+	@Bean(destroyMethod = "close")
+	public UserStore getUserStore(StoreProperties storeProperties) {
+		return storeProperties.isEnabled() ? new LogUserStore(storeProperties) : UserStore.NONE;
+	}
+	
+	@Bean
+	public NearbyAttractionCache getNearbyAttractionCache(RewardsService rewardsService, CacheProperties cacheProperties) {
+		return TourGuideService.newNearbyAttractionCache(rewardsService, cacheProperties);
+	}
+	
+	@Bean(destroyMethod = "close")
+	public RewardPipeline getRewardPipeline(RewardsService rewardsService, PipelineProperties pipelineProperties,
+			TourGuideMetrics metrics) {
+		return pipelineProperties.isEnabled() ? new RingBufferRewardPipeline(rewardsService, pipelineProperties, metrics)
+				: RewardPipeline.inline(rewardsService);
+	}
+	
+	@Bean
+	public TourGuideMetrics getTourGuideMetrics(MeterRegistry meterRegistry) {
+		return new TourGuideMetrics(meterRegistry);
+	}
+	
 }
@@ -0,0 +1,26 @@
+package com.openclassrooms.tourguide;
+
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a batch response: the result of a query for one user, or why there is none.
+ *
+ * @param userName The user name as requested, or the user's name when it was requested by id.
+ * @param userId The user's id, null for an unknown user name.
+ * @param result The result of the query, null on error.
+ * @param error Why the query failed, null on success.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserResult<T>(String userName, UUID userId, T result, String error) {
+
+	static <T> UserResult<T> success(String userName, UUID userId, T result) {
+		return new UserResult<>(userName, userId, result, null);
+	}
+
+	static <T> UserResult<T> failure(String userName, UUID userId, String error) {
+		return new UserResult<>(userName, userId, null, error);
+	}
+
+}
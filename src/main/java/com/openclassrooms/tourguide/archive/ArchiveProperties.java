@@ -0,0 +1,41 @@
+package com.openclassrooms.tourguide.archive;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Location archive settings, bound from the {@code tourguide.archive.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.archive")
+public class ArchiveProperties {
+
+	private boolean enabled = false;
+	private Path directory = Path.of("data", "location-archive");
+	private int recordsPerSegment = 1 << 20;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(Path directory) {
+		this.directory = directory;
+	}
+
+	public int getRecordsPerSegment() {
+		return recordsPerSegment;
+	}
+
+	public void setRecordsPerSegment(int recordsPerSegment) {
+		this.recordsPerSegment = recordsPerSegment;
+	}
+
+}
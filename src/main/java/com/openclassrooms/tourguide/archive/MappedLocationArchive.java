@@ -0,0 +1,160 @@
+package com.openclassrooms.tourguide.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.LocationArchive;
+
+/**
+ * Append-only {@link LocationArchive} kept in memory-mapped files on local disk.
+ * <p>
+ * Locations are appended to segment files of a fixed number of records, each segment being mapped
+ * once. A segment stores its records column by column after an 8 byte header holding the record
+ * count: user id (two longs), sequence, latitude, longitude, epoch millis, and the position of the
+ * user's previous record. The records of a user thus form a chain from the most recent one, whose
+ * position is the only thing kept on the heap per user; the chains are rebuilt from the files when
+ * the archive is opened.
+ * <p>
+ * Reads follow a chain straight from the mapped buffers, without copying the columns to the heap.
+ * Appends are serialized; the position of a record is only published once it is written.
+ */
+public class MappedLocationArchive implements LocationArchive, AutoCloseable {
+	private static final Logger logger = LoggerFactory.getLogger(MappedLocationArchive.class);
+	private static final int HEADER_BYTES = Long.BYTES;
+	private static final int USER_ID_HIGH = 0;
+	private static final int USER_ID_LOW = 1;
+	private static final int SEQUENCE = 2;
+	private static final int LATITUDE = 3;
+	private static final int LONGITUDE = 4;
+	private static final int TIME = 5;
+	private static final int PREVIOUS = 6;
+	private static final int COLUMNS = 7;
+	private static final long NONE = -1;
+
+	private final Path directory;
+	private final int recordsPerSegment;
+	private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+	// position of the most recent record of each user
+	private final Map<UUID, Long> lastRecords = new ConcurrentHashMap<>();
+	// guarded by this
+	private long recordCount;
+
+	/**
+	 * Opens the archive in the given directory, creating it if needed and indexing the records already there.
+	 */
+	public MappedLocationArchive(Path directory, int recordsPerSegment) {
+		if (recordsPerSegment < 1 || HEADER_BYTES + (long) COLUMNS * recordsPerSegment * Long.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("A segment cannot hold " + recordsPerSegment + " records");
+		}
+		this.directory = directory;
+		this.recordsPerSegment = recordsPerSegment;
+		try {
+			Files.createDirectories(directory);
+			for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+				MappedByteBuffer buffer = map(segment);
+				segments.add(buffer);
+				long count = buffer.getLong(0);
+				for (int slot = 0; slot < count; slot++) {
+					UUID userId = new UUID(buffer.getLong(offset(USER_ID_HIGH, slot)), buffer.getLong(offset(USER_ID_LOW, slot)));
+					lastRecords.put(userId, (long) segment * recordsPerSegment + slot);
+				}
+				recordCount = (long) segment * recordsPerSegment + count;
+				if (count < recordsPerSegment) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the location archive in " + directory, e);
+		}
+		logger.info("Location archive opened in " + directory + " with " + recordCount + " locations of "
+				+ lastRecords.size() + " users");
+	}
+
+	public MappedLocationArchive(ArchiveProperties properties) {
+		this(properties.getDirectory(), properties.getRecordsPerSegment());
+	}
+
+	@Override
+	public synchronized void archive(UUID userId, long sequence, double latitude, double longitude, long timeMillis) {
+		int segment = (int) (recordCount / recordsPerSegment);
+		int slot = (int) (recordCount % recordsPerSegment);
+		if (segment == segments.size()) {
+			try {
+				segments.add(map(segment));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Cannot create segment " + segment + " of the location archive", e);
+			}
+		}
+		MappedByteBuffer buffer = segments.get(segment);
+		buffer.putLong(offset(USER_ID_HIGH, slot), userId.getMostSignificantBits());
+		buffer.putLong(offset(USER_ID_LOW, slot), userId.getLeastSignificantBits());
+		buffer.putLong(offset(SEQUENCE, slot), sequence);
+		buffer.putDouble(offset(LATITUDE, slot), latitude);
+		buffer.putDouble(offset(LONGITUDE, slot), longitude);
+		buffer.putLong(offset(TIME, slot), timeMillis);
+		buffer.putLong(offset(PREVIOUS, slot), lastRecords.getOrDefault(userId, NONE));
+		buffer.putLong(0, slot + 1);
+		lastRecords.put(userId, recordCount++);
+	}
+
+	@Override
+	public void forEach(UUID userId, long beforeSequence, Visitor visitor) {
+		long record = lastRecords.getOrDefault(userId, NONE);
+		while (record != NONE) {
+			MappedByteBuffer buffer = segments.get((int) (record / recordsPerSegment));
+			int slot = (int) (record % recordsPerSegment);
+			long sequence = buffer.getLong(offset(SEQUENCE, slot));
+			if (sequence < beforeSequence) {
+				visitor.visit(sequence, buffer.getDouble(offset(LATITUDE, slot)), buffer.getDouble(offset(LONGITUDE, slot)),
+						buffer.getLong(offset(TIME, slot)));
+			}
+			record = buffer.getLong(offset(PREVIOUS, slot));
+		}
+	}
+
+	/**
+	 * @return The number of locations archived, since the archive files were created.
+	 */
+	public synchronized long size() {
+		return recordCount;
+	}
+
+	/**
+	 * Flushes the mapped segments to disk.
+	 */
+	@Override
+	public synchronized void close() {
+		segments.forEach(MappedByteBuffer::force);
+	}
+
+	private MappedByteBuffer map(int segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			// the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_BYTES + (long) COLUMNS * recordsPerSegment * Long.BYTES);
+		}
+	}
+
+	private Path segmentPath(int segment) {
+		return directory.resolve(String.format("locations-%06d.seg", segment));
+	}
+
+	private int offset(int column, int slot) {
+		return HEADER_BYTES + (column * recordsPerSegment + slot) * Long.BYTES;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Attractions loaded once from {@link GpsUtil} and kept as an immutable {@link AttractionIndex}.
+ * <p>
+ * A refresh reloads the attractions and swaps in a new index only when the catalog changed.
+ * Attractions whose name and coordinates are unchanged keep their previous instance, and so
+ * their {@code attractionId}, since GpsUtil hands out a new random id on every call.
+ */
+public class AttractionCatalog implements AutoCloseable {
+	private Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+	private final GpsUtil gpsUtil;
+	private volatile AttractionIndex index;
+	private ScheduledExecutorService scheduler;
+
+	public AttractionCatalog(GpsUtil gpsUtil) {
+		this.gpsUtil = gpsUtil;
+		this.index = new AttractionIndex(gpsUtil.getAttractions());
+	}
+
+	/**
+	 * @return The current snapshot of the catalog; it never changes once returned.
+	 */
+	public AttractionIndex getIndex() {
+		return index;
+	}
+
+	public List<Attraction> getAttractions() {
+		return index.getAttractions();
+	}
+
+	/**
+	 * Reloads the attractions from GpsUtil.
+	 *
+	 * @return true if the catalog changed.
+	 */
+	public synchronized boolean refresh() {
+		List<Attraction> loaded = gpsUtil.getAttractions();
+		Map<String, Attraction> current = new HashMap<>();
+		index.getAttractions().forEach(attraction -> current.put(attraction.attractionName, attraction));
+
+		boolean changed = loaded.size() != current.size();
+		List<Attraction> attractions = new ArrayList<>(loaded.size());
+		for (Attraction attraction : loaded) {
+			Attraction previous = current.get(attraction.attractionName);
+			if (previous != null && previous.latitude == attraction.latitude
+					&& previous.longitude == attraction.longitude) {
+				attractions.add(previous);
+			} else {
+				attractions.add(attraction);
+				changed = true;
+			}
+		}
+
+		if (changed) {
+			index = new AttractionIndex(attractions);
+			logger.debug("Attraction catalog refreshed with " + attractions.size() + " attractions");
+		}
+		return changed;
+	}
+
+	/**
+	 * Refreshes the catalog periodically on a dedicated daemon thread until {@link #close()} is called.
+	 *
+	 * @param interval The delay between two refreshes.
+	 */
+	public synchronized void scheduleRefresh(Duration interval) {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				refresh();
+			} catch (RuntimeException e) {
+				logger.warn("Attraction catalog refresh failed, keeping the previous catalog", e);
+			}
+		}, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+}
@@ -0,0 +1,369 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable spatial index over a fixed set of attractions.
+ * <p>
+ * Each attraction is projected once onto the unit sphere, its precomputed
+ * x/y/z components being kept in primitive arrays, and stored in a balanced
+ * 3-d tree. The straight-line (chord) distance between two unit vectors grows
+ * monotonically with the great-circle distance, so "within N miles" and
+ * "k nearest" queries can prune whole sub-trees with a few multiplications
+ * instead of evaluating {@code acos} against every attraction.
+ */
+public class AttractionIndex {
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	private static final double MILES_PER_RADIAN = STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(1);
+
+	private final List<Attraction> attractions;
+	// tree order: the node of range [lo, hi) is stored at (lo + hi) >>> 1
+	private final Attraction[] nodes;
+	private final double[] x;
+	private final double[] y;
+	private final double[] z;
+	private final byte[] splitAxis;
+
+	public AttractionIndex(List<Attraction> attractions) {
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		int size = attractions.size();
+		nodes = attractions.toArray(new Attraction[0]);
+		x = new double[size];
+		y = new double[size];
+		z = new double[size];
+		splitAxis = new byte[size];
+		for (int i = 0; i < size; i++) {
+			double lat = Math.toRadians(nodes[i].latitude);
+			double lon = Math.toRadians(nodes[i].longitude);
+			x[i] = Math.cos(lat) * Math.cos(lon);
+			y[i] = Math.cos(lat) * Math.sin(lon);
+			z[i] = Math.sin(lat);
+		}
+		build(0, size);
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Finds every attraction whose great-circle distance to the location is at most the given range.
+	 *
+	 * @param location The reference location.
+	 * @param miles The search radius in statute miles.
+	 * @return The matching attractions, in no particular order.
+	 */
+	public List<Attraction> findWithin(Location location, double miles) {
+		if (miles / MILES_PER_RADIAN >= Math.PI) {
+			return attractions;
+		}
+		List<Attraction> result = new ArrayList<>();
+		forEachWithin(location.latitude, location.longitude, miles, (attraction, distance) -> result.add(attraction));
+		return result;
+	}
+
+	/**
+	 * Visits every attraction whose great-circle distance to the given coordinates is at most the given range.
+	 * Each candidate costs a dot product against the precomputed unit vectors; nothing is allocated.
+	 *
+	 * @param latitude The reference latitude, in degrees.
+	 * @param longitude The reference longitude, in degrees.
+	 * @param miles The search radius in statute miles.
+	 * @param visitor Receives each matching attraction with its distance in statute miles, in no particular order.
+	 */
+	public void forEachWithin(double latitude, double longitude, double miles, AttractionVisitor visitor) {
+		double angle = miles / MILES_PER_RADIAN;
+		if (angle < 0) {
+			return;
+		}
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		double px = cosLat * Math.cos(lon);
+		double py = cosLat * Math.sin(lon);
+		double pz = Math.sin(lat);
+		if (angle >= Math.PI) {
+			for (int i = 0; i < nodes.length; i++) {
+				visitor.visit(nodes[i], toMiles(dot(i, px, py, pz)));
+			}
+			return;
+		}
+		double chord = 2 * Math.sin(angle / 2);
+		collectWithin(0, nodes.length, px, py, pz, chord * chord, visitor);
+	}
+
+	/**
+	 * Finds the k attractions closest to the location, no matter how far away they are.
+	 *
+	 * @param location The reference location.
+	 * @param k The maximum number of attractions to return.
+	 * @return The closest attractions, sorted from nearest to farthest.
+	 */
+	public List<Attraction> findNearest(Location location, int k) {
+		List<Attraction> result = new ArrayList<>(Math.max(0, Math.min(k, nodes.length)));
+		forEachNearest(location.latitude, location.longitude, k, (attraction, distance) -> result.add(attraction));
+		return result;
+	}
+
+	/**
+	 * Visits the k attractions closest to the given coordinates, no matter how far away they are.
+	 *
+	 * @param latitude The reference latitude, in degrees.
+	 * @param longitude The reference longitude, in degrees.
+	 * @param k The maximum number of attractions to visit.
+	 * @param visitor Receives each attraction with its distance in statute miles, from nearest to farthest.
+	 */
+	public void forEachNearest(double latitude, double longitude, int k, AttractionVisitor visitor) {
+		int count = Math.min(k, nodes.length);
+		if (count <= 0) {
+			return;
+		}
+		double lat = Math.toRadians(latitude);
+		double lon = Math.toRadians(longitude);
+		double cosLat = Math.cos(lat);
+		double px = cosLat * Math.cos(lon);
+		double py = cosLat * Math.sin(lon);
+		double pz = Math.sin(lat);
+		// bounded max-heap on squared chord distance
+		Neighbours heap = new Neighbours(count);
+		collectNearest(0, nodes.length, px, py, pz, heap);
+
+		int[] sorted = new int[heap.size];
+		for (int i = heap.size - 1; i >= 0; i--) {
+			sorted[i] = heap.index[0];
+			heap.pop();
+		}
+		for (int node : sorted) {
+			visitor.visit(nodes[node], toMiles(dot(node, px, py, pz)));
+		}
+	}
+
+	private static double toMiles(double dot) {
+		return MILES_PER_RADIAN * Math.acos(Math.max(-1, Math.min(1, dot)));
+	}
+
+	private double dot(int i, double px, double py, double pz) {
+		return x[i] * px + y[i] * py + z[i] * pz;
+	}
+
+	private double axisDelta(int i, double px, double py, double pz) {
+		switch (splitAxis[i]) {
+		case 0:
+			return px - x[i];
+		case 1:
+			return py - y[i];
+		default:
+			return pz - z[i];
+		}
+	}
+
+	private void collectWithin(int lo, int hi, double px, double py, double pz, double radiusSquared,
+			AttractionVisitor visitor) {
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		// squared chord length between unit vectors: |a - b|^2 = 2 - 2 a.b
+		double dot = dot(mid, px, py, pz);
+		if (2 - 2 * dot <= radiusSquared) {
+			visitor.visit(nodes[mid], toMiles(dot));
+		}
+		double delta = axisDelta(mid, px, py, pz);
+		if (delta <= 0 || delta * delta <= radiusSquared) {
+			collectWithin(lo, mid, px, py, pz, radiusSquared, visitor);
+		}
+		if (delta >= 0 || delta * delta <= radiusSquared) {
+			collectWithin(mid + 1, hi, px, py, pz, radiusSquared, visitor);
+		}
+	}
+
+	private void collectNearest(int lo, int hi, double px, double py, double pz, Neighbours heap) {
+		if (lo >= hi) {
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		heap.offer(mid, 2 - 2 * dot(mid, px, py, pz));
+		double delta = axisDelta(mid, px, py, pz);
+		// visit the side containing the point first so the far side can usually be pruned
+		if (delta <= 0) {
+			collectNearest(lo, mid, px, py, pz, heap);
+			if (!heap.isFull() || delta * delta < heap.worst()) {
+				collectNearest(mid + 1, hi, px, py, pz, heap);
+			}
+		} else {
+			collectNearest(mid + 1, hi, px, py, pz, heap);
+			if (!heap.isFull() || delta * delta < heap.worst()) {
+				collectNearest(lo, mid, px, py, pz, heap);
+			}
+		}
+	}
+
+	private void build(int lo, int hi) {
+		if (hi - lo <= 0) {
+			return;
+		}
+		byte axis = widestAxis(lo, hi);
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, axis);
+		splitAxis[mid] = axis;
+		build(lo, mid);
+		build(mid + 1, hi);
+	}
+
+	private byte widestAxis(int lo, int hi) {
+		double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = lo; i < hi; i++) {
+			min[0] = Math.min(min[0], x[i]);
+			max[0] = Math.max(max[0], x[i]);
+			min[1] = Math.min(min[1], y[i]);
+			max[1] = Math.max(max[1], y[i]);
+			min[2] = Math.min(min[2], z[i]);
+			max[2] = Math.max(max[2], z[i]);
+		}
+		double spreadX = max[0] - min[0];
+		double spreadY = max[1] - min[1];
+		double spreadZ = max[2] - min[2];
+		if (spreadX >= spreadY && spreadX >= spreadZ) {
+			return 0;
+		}
+		return spreadY >= spreadZ ? (byte) 1 : (byte) 2;
+	}
+
+	private double coordinate(int i, byte axis) {
+		return axis == 0 ? x[i] : axis == 1 ? y[i] : z[i];
+	}
+
+	/**
+	 * Quickselect: places the k-th smallest element of [left, right] on the given axis at position k.
+	 */
+	private void select(int left, int right, int k, byte axis) {
+		while (left < right) {
+			double pivot = coordinate((left + right) >>> 1, axis);
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (coordinate(i, axis) < pivot) {
+					i++;
+				}
+				while (coordinate(j, axis) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				right = j;
+			} else if (k >= i) {
+				left = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		Attraction node = nodes[i];
+		nodes[i] = nodes[j];
+		nodes[j] = node;
+		double tmp = x[i];
+		x[i] = x[j];
+		x[j] = tmp;
+		tmp = y[i];
+		y[i] = y[j];
+		y[j] = tmp;
+		tmp = z[i];
+		z[i] = z[j];
+		z[j] = tmp;
+	}
+
+	/**
+	 * Fixed-capacity max-heap of node positions keyed by squared chord distance.
+	 */
+	private static class Neighbours {
+		private final int[] index;
+		private final double[] distance;
+		private int size;
+
+		Neighbours(int capacity) {
+			index = new int[capacity];
+			distance = new double[capacity];
+		}
+
+		boolean isFull() {
+			return size == index.length;
+		}
+
+		double worst() {
+			return distance[0];
+		}
+
+		void offer(int node, double squaredDistance) {
+			if (!isFull()) {
+				index[size] = node;
+				distance[size] = squaredDistance;
+				siftUp(size++);
+			} else if (squaredDistance < distance[0]) {
+				index[0] = node;
+				distance[0] = squaredDistance;
+				siftDown(0);
+			}
+		}
+
+		void pop() {
+			size--;
+			index[0] = index[size];
+			distance[0] = distance[size];
+			siftDown(0);
+		}
+
+		private void siftUp(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (distance[parent] >= distance[i]) {
+					return;
+				}
+				exchange(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int largest = i;
+				int left = 2 * i + 1;
+				int right = left + 1;
+				if (left < size && distance[left] > distance[largest]) {
+					largest = left;
+				}
+				if (right < size && distance[right] > distance[largest]) {
+					largest = right;
+				}
+				if (largest == i) {
+					return;
+				}
+				exchange(i, largest);
+				i = largest;
+			}
+		}
+
+		private void exchange(int i, int j) {
+			int node = index[i];
+			index[i] = index[j];
+			index[j] = node;
+			double tmp = distance[i];
+			distance[i] = distance[j];
+			distance[j] = tmp;
+		}
+	}
+}
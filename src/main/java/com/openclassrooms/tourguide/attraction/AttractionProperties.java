@@ -0,0 +1,23 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Attraction catalog settings, bound from the {@code tourguide.attractions.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.attractions")
+public class AttractionProperties {
+
+	private Duration refreshInterval = Duration.ofHours(1);
+
+	public Duration getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	public void setRefreshInterval(Duration refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+}
@@ -0,0 +1,17 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Receives the attractions matched by an {@link AttractionIndex} query.
+ */
+@FunctionalInterface
+public interface AttractionVisitor {
+
+	/**
+	 * @param attraction The matched attraction.
+	 * @param distance The great-circle distance to the query location, in statute miles.
+	 */
+	void visit(Attraction attraction, double distance);
+
+}
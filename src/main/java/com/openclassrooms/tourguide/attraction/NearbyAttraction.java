@@ -0,0 +1,16 @@
+package com.openclassrooms.tourguide.attraction;
+
+/**
+ * An attraction close to a user, as returned by {@code /getNearbyAttractions}.
+ *
+ * @param name The attraction name.
+ * @param attractionLatitude The attraction latitude, in degrees.
+ * @param attractionLongitude The attraction longitude, in degrees.
+ * @param userLatitude The latitude of the user's location, in degrees.
+ * @param userLongitude The longitude of the user's location, in degrees.
+ * @param distance The great-circle distance between the user and the attraction, in statute miles.
+ * @param rewardPoints The points the user would be rewarded for visiting the attraction.
+ */
+public record NearbyAttraction(String name, double attractionLatitude, double attractionLongitude,
+		double userLatitude, double userLongitude, double distance, int rewardPoints) {
+}
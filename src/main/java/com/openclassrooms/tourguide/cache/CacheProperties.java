@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sizing of the in-memory caches, bound from the {@code tourguide.cache.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.cache")
+public class CacheProperties {
+
+	private final Spec rewardPoints = new Spec(1_000_000, Duration.ofHours(24));
+	private final Spec tripDeals = new Spec(100_000, Duration.ofMinutes(30), Duration.ofMinutes(5));
+	// cells unused for the TTL are evicted
+	private final Spec nearbyAttractions = new Spec(100_000, Duration.ofHours(1));
+	private double nearbyCellDegrees = 0.5;
+
+	public Spec getRewardPoints() {
+		return rewardPoints;
+	}
+
+	public Spec getTripDeals() {
+		return tripDeals;
+	}
+
+	public Spec getNearbyAttractions() {
+		return nearbyAttractions;
+	}
+
+	public double getNearbyCellDegrees() {
+		return nearbyCellDegrees;
+	}
+
+	public void setNearbyCellDegrees(double nearbyCellDegrees) {
+		this.nearbyCellDegrees = nearbyCellDegrees;
+	}
+
+	/**
+	 * Size-based and time-based eviction settings of one cache, and when its entries are reloaded
+	 * in the background ({@code null} when they are not).
+	 */
+	public static class Spec {
+		private long maximumSize;
+		private Duration ttl;
+		private Duration refreshAfter;
+
+		public Spec(long maximumSize, Duration ttl) {
+			this(maximumSize, ttl, null);
+		}
+
+		public Spec(long maximumSize, Duration ttl, Duration refreshAfter) {
+			this.maximumSize = maximumSize;
+			this.ttl = ttl;
+			this.refreshAfter = refreshAfter;
+		}
+
+		public long getMaximumSize() {
+			return maximumSize;
+		}
+
+		public void setMaximumSize(long maximumSize) {
+			this.maximumSize = maximumSize;
+		}
+
+		public Duration getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(Duration ttl) {
+			this.ttl = ttl;
+		}
+
+		public Duration getRefreshAfter() {
+			return refreshAfter;
+		}
+
+		public void setRefreshAfter(Duration refreshAfter) {
+			this.refreshAfter = refreshAfter;
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.Arrays;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.AttractionVisitor;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Caches, per cell of a latitude/longitude grid, the attractions that can be among the closest ones
+ * to any location of the cell.
+ * <p>
+ * Every location of a cell is at most {@code r} miles away from its center, {@code r} being the half
+ * diagonal of the cell. If the k-th closest attraction to the center is {@code d} miles away, the k
+ * closest attractions to any location of the cell are within {@code d + 2r} miles of the center, so
+ * those are the candidates kept for the cell. A query only ranks the candidates of its cell, with a
+ * dot product each against their precomputed unit vectors, and gets the same attractions as a query
+ * of the whole {@link AttractionIndex}. Locations polled repeatedly, or close to each other, share
+ * their cell. A cell computed from an older catalog is computed again on its next lookup. The cache
+ * reports its hit ratio as {@code cache.*} meters named {@code nearbyAttractions}.
+ */
+public class NearbyAttractionCache {
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	private static final double MILES_PER_DEGREE = STATUTE_MILES_PER_NAUTICAL_MILE * 60;
+	private static final double MILES_PER_RADIAN = MILES_PER_DEGREE * Math.toDegrees(1);
+
+	private final AttractionCatalog attractionCatalog;
+	private final int count;
+	private final double cellDegrees;
+	// half diagonal of a cell, with a margin for the flat approximation
+	private final double cellRadiusMiles;
+	private final AsyncCache<Long, Cell> cache;
+
+	/**
+	 * @param attractionCatalog The catalog the attractions come from.
+	 * @param count The number of closest attractions returned by a query.
+	 * @param cellDegrees The side of a grid cell, in degrees.
+	 */
+	public NearbyAttractionCache(AttractionCatalog attractionCatalog, int count, double cellDegrees,
+			CacheProperties.Spec spec, TourGuideMetrics metrics) {
+		if (cellDegrees <= 0 || cellDegrees > 10) {
+			throw new IllegalArgumentException("cellDegrees must be in (0, 10]: " + cellDegrees);
+		}
+		this.attractionCatalog = attractionCatalog;
+		this.count = count;
+		this.cellDegrees = cellDegrees;
+		this.cellRadiusMiles = 1.01 * Math.sqrt(2) * cellDegrees / 2 * MILES_PER_DEGREE;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(spec.getMaximumSize())
+				.expireAfterAccess(spec.getTtl())
+				.recordStats()
+				.buildAsync();
+		metrics.monitorCache(cache, "nearbyAttractions");
+	}
+
+	/**
+	 * Visits the attractions closest to the given coordinates, no matter how far away they are.
+	 *
+	 * @param latitude The reference latitude, in degrees.
+	 * @param longitude The reference longitude, in degrees.
+	 * @param visitor Receives each of the closest attractions with its distance in statute miles,
+	 * from nearest to farthest.
+	 */
+	public void forEachNearest(double latitude, double longitude, AttractionVisitor visitor) {
+		AttractionIndex attractionIndex = attractionCatalog.getIndex();
+		long latitudeCell = (long) Math.floor(latitude / cellDegrees);
+		long longitudeCell = (long) Math.floor(longitude / cellDegrees);
+		Long key = (latitudeCell << 32) ^ (longitudeCell & 0xFFFFFFFFL);
+		Cell cell = cache.synchronous().get(key, k -> newCell(attractionIndex, latitudeCell, longitudeCell));
+		if (cell.attractionIndex != attractionIndex) {
+			cell = newCell(attractionIndex, latitudeCell, longitudeCell);
+			cache.synchronous().put(key, cell);
+		}
+		cell.forEachNearest(latitude, longitude, count, visitor);
+	}
+
+	/**
+	 * @return Hit, miss and eviction counts since the cache was created.
+	 */
+	public CacheStats stats() {
+		return cache.synchronous().stats();
+	}
+
+	private Cell newCell(AttractionIndex attractionIndex, long latitudeCell, long longitudeCell) {
+		double centerLatitude = (latitudeCell + 0.5) * cellDegrees;
+		double centerLongitude = (longitudeCell + 0.5) * cellDegrees;
+		double[] farthest = new double[1];
+		attractionIndex.forEachNearest(centerLatitude, centerLongitude, count,
+				(attraction, distance) -> farthest[0] = distance);
+		Cell cell = new Cell(attractionIndex);
+		attractionIndex.forEachWithin(centerLatitude, centerLongitude, farthest[0] + 2 * cellRadiusMiles,
+				(attraction, distance) -> cell.add(attraction));
+		return cell;
+	}
+
+	/**
+	 * The candidate attractions of a cell, with their unit vectors.
+	 */
+	private static class Cell {
+		private final AttractionIndex attractionIndex;
+		private Attraction[] attractions = new Attraction[8];
+		private double[] x = new double[8];
+		private double[] y = new double[8];
+		private double[] z = new double[8];
+		private int size;
+
+		Cell(AttractionIndex attractionIndex) {
+			this.attractionIndex = attractionIndex;
+		}
+
+		void add(Attraction attraction) {
+			if (size == attractions.length) {
+				int capacity = size * 2;
+				attractions = Arrays.copyOf(attractions, capacity);
+				x = Arrays.copyOf(x, capacity);
+				y = Arrays.copyOf(y, capacity);
+				z = Arrays.copyOf(z, capacity);
+			}
+			double lat = Math.toRadians(attraction.latitude);
+			double lon = Math.toRadians(attraction.longitude);
+			attractions[size] = attraction;
+			x[size] = Math.cos(lat) * Math.cos(lon);
+			y[size] = Math.cos(lat) * Math.sin(lon);
+			z[size] = Math.sin(lat);
+			size++;
+		}
+
+		void forEachNearest(double latitude, double longitude, int count, AttractionVisitor visitor) {
+			double lat = Math.toRadians(latitude);
+			double lon = Math.toRadians(longitude);
+			double cosLat = Math.cos(lat);
+			double px = cosLat * Math.cos(lon);
+			double py = cosLat * Math.sin(lon);
+			double pz = Math.sin(lat);
+			int k = Math.min(count, size);
+			if (k <= 0) {
+				return;
+			}
+			// insertion into the k best so far, the closest attraction having the largest dot product
+			int[] best = new int[k];
+			double[] bestDot = new double[k];
+			int found = 0;
+			for (int i = 0; i < size; i++) {
+				double dot = x[i] * px + y[i] * py + z[i] * pz;
+				if (found == k && dot <= bestDot[k - 1]) {
+					continue;
+				}
+				int position = (found < k) ? found++ : k - 1;
+				while (position > 0 && bestDot[position - 1] < dot) {
+					best[position] = best[position - 1];
+					bestDot[position] = bestDot[position - 1];
+					position--;
+				}
+				best[position] = i;
+				bestDot[position] = dot;
+			}
+			for (int i = 0; i < found; i++) {
+				visitor.visit(attractions[best[i]], MILES_PER_RADIAN * Math.acos(Math.max(-1, Math.min(1, bestDot[i]))));
+			}
+		}
+	}
+
+}
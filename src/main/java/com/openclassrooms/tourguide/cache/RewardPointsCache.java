@@ -0,0 +1,100 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.client.HedgedClient;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * Caches the reward points RewardCentral grants a user for an attraction.
+ * <p>
+ * Entries are evicted once the cache holds more than the configured number of
+ * (attraction, user) pairs or once they are older than the configured TTL.
+ * Concurrent misses on the same pair share a single RewardCentral call, made through
+ * a {@link HedgedClient} so that a slow call is hedged and a call past its deadline
+ * fails instead of holding back the reward calculation. A failed call is not cached:
+ * the pair is asked for again by the next calculation. Only the RewardCentral calls are
+ * timed; the cache itself reports its hit ratio as {@code cache.*} meters named
+ * {@code rewardPoints}.
+ */
+public class RewardPointsCache {
+
+	private final RewardCentral rewardCentral;
+	private final HedgedClient client;
+	private final TourGuideMetrics metrics;
+	private final AsyncCache<RewardKey, Integer> cache;
+
+	public RewardPointsCache(RewardCentral rewardCentral, Executor executor, CacheProperties.Spec spec,
+			TourGuideMetrics metrics) {
+		this(rewardCentral, new HedgedClient("rewardCentral", executor, new ClientProperties().getRewardCentral(), metrics),
+				spec, metrics);
+	}
+
+	public RewardPointsCache(RewardCentral rewardCentral, HedgedClient client, CacheProperties.Spec spec,
+			TourGuideMetrics metrics) {
+		this.rewardCentral = rewardCentral;
+		this.client = client;
+		this.metrics = metrics;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(spec.getMaximumSize())
+				.expireAfterWrite(spec.getTtl())
+				.executor(client.getExecutor())
+				.recordStats()
+				.buildAsync();
+		metrics.monitorCache(cache, "rewardPoints");
+	}
+
+	/**
+	 * @return The reward points, without blocking: an already cached value is returned as a completed future.
+	 */
+	public CompletableFuture<Integer> getRewardPointsAsync(UUID attractionId, UUID userId) {
+		RewardKey key = new RewardKey(attractionId, userId);
+		CompletableFuture<Integer> loading = new CompletableFuture<>();
+		CompletableFuture<Integer> rewardPoints = cache.get(key, (k, executor) -> loading);
+		if (rewardPoints == loading) {
+			// called once the entry is in rather than from within the cache's map: a caller running the call
+			// itself because the limiter's queue is full would otherwise lock the neighbouring keys meanwhile
+			load(key).whenComplete((points, e) -> {
+				if (e != null) {
+					loading.completeExceptionally(e);
+				} else {
+					loading.complete(points);
+				}
+			});
+		}
+		return rewardPoints;
+	}
+
+	public int getRewardPoints(UUID attractionId, UUID userId) {
+		return getRewardPointsAsync(attractionId, userId).join();
+	}
+
+	/**
+	 * @return Hit, miss and eviction counts since the cache was created.
+	 */
+	public CacheStats stats() {
+		return cache.synchronous().stats();
+	}
+
+	private CompletableFuture<Integer> load(RewardKey key) {
+		try {
+			return client.call(() -> metrics.getRewardCentralTimer()
+					.record(() -> rewardCentral.getAttractionRewardPoints(key.attractionId(), key.userId())));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private record RewardKey(UUID attractionId, UUID userId) {
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.openclassrooms.tourguide.cache;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import com.openclassrooms.tourguide.client.AdaptiveLimiter;
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+
+/**
+ * Caches the trip deals TripPricer offers a user.
+ * <p>
+ * Deals are keyed by the user and everything they are priced from: the number of adults and
+ * children, the trip duration and the user's reward points. A change to any of them misses the
+ * cache, so stale deals are never served for different preferences. Entries are evicted once the
+ * cache holds more than the configured number of deals or once they are older than the TTL.
+ * When a refresh delay is configured, a lookup after it still returns the cached deals right away
+ * while TripPricer prices them again in the background.
+ * <p>
+ * TripPricer calls run on the executor of the given {@link AdaptiveLimiter}, which keeps their
+ * concurrency at what TripPricer can serve, concurrent misses on the same key sharing a single
+ * call; they are timed, and the cache reports its hit ratio as {@code cache.*} meters named
+ * {@code tripDeals}.
+ */
+public class TripDealCache {
+	private static final String tripPricerApiKey = "test-server-api-key";
+
+	private final AsyncLoadingCache<TripDealKey, List<Provider>> cache;
+
+	public TripDealCache(TripPricer tripPricer, Executor executor, CacheProperties.Spec spec,
+			TourGuideMetrics metrics) {
+		this(tripPricer, new AdaptiveLimiter("tripPricer", executor, new ClientProperties().getTripPricerLimit(), metrics),
+				spec, metrics);
+	}
+
+	public TripDealCache(TripPricer tripPricer, AdaptiveLimiter limiter, CacheProperties.Spec spec,
+			TourGuideMetrics metrics) {
+		Caffeine<Object, Object> builder = Caffeine.newBuilder()
+				.maximumSize(spec.getMaximumSize())
+				.expireAfterWrite(spec.getTtl())
+				.executor(limiter.getExecutor())
+				.recordStats();
+		if (spec.getRefreshAfter() != null) {
+			builder.refreshAfterWrite(spec.getRefreshAfter());
+		}
+		this.cache = builder.buildAsync((key, executor) -> limiter.call(() -> List.copyOf(metrics.getTripPricerTimer()
+				.record(() -> tripPricer.getPrice(tripPricerApiKey, key.userId(), key.adults(), key.children(),
+						key.nightsStay(), key.rewardPoints())))));
+		metrics.monitorCache(cache, "tripDeals");
+	}
+
+	/**
+	 * @return The trip deals, without blocking: deals already cached are returned as a completed future.
+	 */
+	public CompletableFuture<List<Provider>> getTripDealsAsync(UUID userId, int adults, int children,
+			int nightsStay, int rewardPoints) {
+		return cache.get(new TripDealKey(userId, adults, children, nightsStay, rewardPoints));
+	}
+
+	/**
+	 * @return Hit, miss and eviction counts since the cache was created.
+	 */
+	public CacheStats stats() {
+		return cache.synchronous().stats();
+	}
+
+	private record TripDealKey(UUID userId, int adults, int children, int nightsStay, int rewardPoints) {
+	}
+
+}
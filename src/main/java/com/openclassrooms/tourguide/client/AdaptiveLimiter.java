@@ -0,0 +1,259 @@
+package com.openclassrooms.tourguide.client;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bounds the number of concurrent calls to one upstream library, the bound following the latency
+ * the library answers with.
+ * <p>
+ * Calls past the limit wait in a bounded queue and are run on the given executor as earlier calls
+ * complete. The queue holds a fixed number of calls at most, and at most a few times the current
+ * limit, so that a call waits for about as many round trips of the library whatever the limit: long
+ * enough to smooth bursts, short enough for the call to still meet its deadline. Once the queue is
+ * full, the caller runs its call itself, past the limit, as with the {@code CALLER_RUNS} policy of
+ * the shared executor: producers slow down instead of piling up calls. Such calls are not counted
+ * against the limit, so that many callers running their own calls never hold back the queued ones.
+ * The limit is adjusted by a gradient, in the way of TCP Vegas, about once per round trip: the recent latency,
+ * averaged over about {@value #RECENT_CALLS} calls, is compared with the lowest such average seen over
+ * the last one to two minutes, which stands for the library's latency when it is not overloaded; the
+ * limit is left at its initial value until the first {@value #WARM_UP_CALLS} calls have set that average.
+ * As long as the recent latency stays within the tolerance of that baseline the limit grows by its
+ * square root, and beyond it the limit shrinks in proportion to the slowdown, by half at most. Until
+ * the first slowdown the limit doubles instead, as in TCP slow start, so it quickly reaches the
+ * capacity of a library that is far from overloaded.
+ * Throughput thus settles at what the library can actually serve, the excess calls queuing here
+ * rather than inside the library. The limit is not raised while less than half of it is used.
+ * <p>
+ * The limit, the calls in flight and the queued calls are reported as {@code tourguide.limiter.*}
+ * meters tagged with the client name, the time calls wait for their turn as {@code tourguide.limiter.wait}
+ * and the calls run by their caller as {@code tourguide.limiter.caller-runs}.
+ * A disabled limiter runs every call right away.
+ */
+public class AdaptiveLimiter {
+	private static final int RECENT_CALLS = 100;
+	private static final int WARM_UP_CALLS = 32;
+	private static final double RECENT_WEIGHT = 2.0 / (RECENT_CALLS + 1);
+	private static final long BASELINE_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	private final Executor executor;
+	private final LongSupplier ticker;
+	private final boolean enabled;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final int queueCapacity;
+	private final int queueRoundTrips;
+	private final Queue<Pending<?>> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	// calls dispatched within the limit, apart from those their caller runs past it
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger callerRunning = new AtomicInteger();
+	private final Timer waitTimer;
+	private final Counter callerRuns;
+	private volatile double limit;
+	// guarded by this
+	private long samples;
+	private boolean slowStart = true;
+	private double recentLatency;
+	private double windowMinLatency;
+	private double previousWindowMinLatency;
+	private long windowStart;
+
+	/**
+	 * @param name The name of the client, used in the meter tags.
+	 * @param executor The executor the calls run on.
+	 * @param limit The initial limit, its bounds and the latency tolerance.
+	 * @param metrics The meters the limiter reports to.
+	 */
+	public AdaptiveLimiter(String name, Executor executor, ClientProperties.Limit limit, TourGuideMetrics metrics) {
+		this(name, executor, limit, metrics, System::nanoTime);
+	}
+
+	/**
+	 * @param name The name of the client, used in the meter tags.
+	 * @param executor The executor the calls run on.
+	 * @param limit The initial limit, its bounds and the latency tolerance.
+	 * @param metrics The meters the limiter reports to.
+	 * @param ticker The time source in nanoseconds the latencies are measured with.
+	 */
+	public AdaptiveLimiter(String name, Executor executor, ClientProperties.Limit limit, TourGuideMetrics metrics,
+			LongSupplier ticker) {
+		this.executor = executor;
+		this.ticker = ticker;
+		this.enabled = limit.isEnabled();
+		this.minLimit = limit.getMin();
+		this.maxLimit = limit.getMax();
+		this.tolerance = limit.getTolerance();
+		this.queueCapacity = limit.getQueueCapacity();
+		this.queueRoundTrips = limit.getQueueRoundTrips();
+		this.limit = enabled ? Math.max(minLimit, Math.min(maxLimit, limit.getInitial())) : maxLimit;
+
+		Tags tags = Tags.of("client", name);
+		metrics.gauge("tourguide.limiter.limit", "Calls to the library that may be in flight together",
+				tags, this, AdaptiveLimiter::getLimit);
+		metrics.gauge("tourguide.limiter.in-flight", "Calls to the library in flight", tags, this,
+				AdaptiveLimiter::getInFlight);
+		metrics.gauge("tourguide.limiter.queued", "Calls to the library waiting for the limit", tags, this,
+				AdaptiveLimiter::getQueued);
+		waitTimer = metrics.timer("tourguide.limiter.wait", "Time a call waits for the limit before it runs", tags);
+		callerRuns = metrics.counter("tourguide.limiter.caller-runs",
+				"Calls run by their caller past the limit because the queue was full", tags);
+	}
+
+	/**
+	 * Runs the call once the limit allows it, without blocking the caller unless the queue is full.
+	 *
+	 * @param request The library call.
+	 * @return A future of the call's result, completed after the call is counted out of the limit.
+	 */
+	public <T> CompletableFuture<T> call(Supplier<T> request) {
+		if (!enabled) {
+			return CompletableFuture.supplyAsync(request, executor);
+		}
+		Pending<T> pending = new Pending<>(request, ticker.getAsLong());
+		if (queued.incrementAndGet() > Math.min(queueCapacity, queueRoundTrips * (int) limit)) {
+			queued.decrementAndGet();
+			callerRuns.increment();
+			callerRunning.incrementAndGet();
+			run(pending, callerRunning);
+			return pending.result;
+		}
+		queue.add(pending);
+		drain();
+		return pending.result;
+	}
+
+	/**
+	 * @return The executor the calls run on.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return The current limit.
+	 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * @return The calls in flight, those run by their caller past the limit included.
+	 */
+	public int getInFlight() {
+		return inFlight.get() + callerRunning.get();
+	}
+
+	public int getQueued() {
+		return queued.get();
+	}
+
+	private void drain() {
+		while (!queue.isEmpty()) {
+			int current = inFlight.get();
+			if (current >= (int) limit) {
+				// the call completing next drains the queue again
+				return;
+			}
+			if (!inFlight.compareAndSet(current, current + 1)) {
+				continue;
+			}
+			Pending<?> pending = queue.poll();
+			if (pending == null) {
+				inFlight.decrementAndGet();
+				continue;
+			}
+			queued.decrementAndGet();
+			dispatch(pending);
+		}
+	}
+
+	private <T> void dispatch(Pending<T> pending) {
+		try {
+			executor.execute(() -> run(pending, inFlight));
+		} catch (RejectedExecutionException e) {
+			inFlight.decrementAndGet();
+			pending.result.completeExceptionally(e);
+		}
+	}
+
+	private <T> void run(Pending<T> pending, AtomicInteger running) {
+		long start = ticker.getAsLong();
+		waitTimer.record(start - pending.queuedNanos, TimeUnit.NANOSECONDS);
+		int inFlightAtStart = getInFlight();
+		T value = null;
+		RuntimeException failure = null;
+		try {
+			value = pending.request.get();
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		long end = ticker.getAsLong();
+		update(end - start, inFlightAtStart, end);
+		running.decrementAndGet();
+		drain();
+		// completed last, so that the caller's continuations are neither timed nor counted in flight
+		if (failure != null) {
+			pending.result.completeExceptionally(failure);
+		} else {
+			pending.result.complete(value);
+		}
+	}
+
+	private synchronized void update(long latencyNanos, int inFlightAtStart, long now) {
+		samples++;
+		if (samples <= WARM_UP_CALLS) {
+			// the first calls only set the average the baseline starts from, the limit is left as is
+			recentLatency += (latencyNanos - recentLatency) / samples;
+			windowMinLatency = previousWindowMinLatency = recentLatency;
+			windowStart = now;
+			return;
+		}
+		recentLatency += (latencyNanos - recentLatency) * RECENT_WEIGHT;
+		if (now - windowStart > BASELINE_WINDOW_NANOS) {
+			previousWindowMinLatency = windowMinLatency;
+			windowMinLatency = recentLatency;
+			windowStart = now;
+		}
+		windowMinLatency = Math.min(windowMinLatency, recentLatency);
+		if (inFlightAtStart < limit / 2) {
+			return;
+		}
+
+		double baseline = Math.min(windowMinLatency, previousWindowMinLatency);
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * baseline / recentLatency));
+		slowStart &= gradient >= 1.0;
+		// each call moves the limit 1/limit of the way, so it reaches the estimate about once per round trip
+		double estimate = slowStart ? 2 * limit : limit * gradient + Math.sqrt(limit);
+		limit = Math.max(minLimit, Math.min(maxLimit, limit + (estimate - limit) / limit));
+	}
+
+	/**
+	 * A call waiting for the limit.
+	 */
+	private static class Pending<T> {
+		private final Supplier<T> request;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private final long queuedNanos;
+
+		Pending(Supplier<T> request, long queuedNanos) {
+			this.request = request;
+			this.queuedNanos = queuedNanos;
+		}
+	}
+
+}
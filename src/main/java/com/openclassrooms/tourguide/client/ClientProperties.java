@@ -0,0 +1,179 @@
+package com.openclassrooms.tourguide.client;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Deadlines, hedging and concurrency limits of the calls to the upstream libraries, bound from the
+ * {@code tourguide.client.gps.*}, {@code tourguide.client.reward-central.*} and
+ * {@code tourguide.client.trip-pricer-limit.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.client")
+public class ClientProperties {
+
+	// both libraries run on the tracking executor: their limits add up to its 256 threads at most, so that
+	// the calls a limit lets through never wait for a thread out of sight of the limit and of the deadline
+	private final Spec gps = new Spec(Duration.ofSeconds(10), new Limit(16, 8, 128));
+	private final Spec rewardCentral = new Spec(Duration.ofSeconds(5), new Limit(16, 8, 128));
+	// TripPricer is only limited, its calls are neither hedged nor given a deadline
+	private final Limit tripPricerLimit = new Limit(4, 2, 32);
+
+	public Spec getGps() {
+		return gps;
+	}
+
+	public Spec getRewardCentral() {
+		return rewardCentral;
+	}
+
+	public Limit getTripPricerLimit() {
+		return tripPricerLimit;
+	}
+
+	/**
+	 * Settings of the calls to one library.
+	 */
+	public static class Spec {
+		private Duration deadline;
+		private boolean hedge = true;
+		private double hedgePercentile = 0.95;
+		private Duration minHedgeDelay = Duration.ofMillis(50);
+		private int maxConcurrentHedges = 16;
+		private final Limit limit;
+
+		public Spec(Duration deadline) {
+			this(deadline, new Limit(16, 8, 128));
+		}
+
+		public Spec(Duration deadline, Limit limit) {
+			this.deadline = deadline;
+			this.limit = limit;
+		}
+
+		public Duration getDeadline() {
+			return deadline;
+		}
+
+		public void setDeadline(Duration deadline) {
+			this.deadline = deadline;
+		}
+
+		public boolean isHedge() {
+			return hedge;
+		}
+
+		public void setHedge(boolean hedge) {
+			this.hedge = hedge;
+		}
+
+		public double getHedgePercentile() {
+			return hedgePercentile;
+		}
+
+		public void setHedgePercentile(double hedgePercentile) {
+			this.hedgePercentile = hedgePercentile;
+		}
+
+		public Duration getMinHedgeDelay() {
+			return minHedgeDelay;
+		}
+
+		public void setMinHedgeDelay(Duration minHedgeDelay) {
+			this.minHedgeDelay = minHedgeDelay;
+		}
+
+		public int getMaxConcurrentHedges() {
+			return maxConcurrentHedges;
+		}
+
+		public void setMaxConcurrentHedges(int maxConcurrentHedges) {
+			this.maxConcurrentHedges = maxConcurrentHedges;
+		}
+
+		public Limit getLimit() {
+			return limit;
+		}
+	}
+
+	/**
+	 * Bounds and sensitivity of the adaptive concurrency limit of one library; disabled, calls are never held back.
+	 * The initial limit should stay low, the first calls being taken as the library's unloaded latency. Once
+	 * {@code queueCapacity} calls, or {@code queueRoundTrips} times the current limit, wait for the limit,
+	 * further callers run their call themselves.
+	 */
+	public static class Limit {
+		private boolean enabled = true;
+		private int initial;
+		private int min;
+		private int max;
+		// how much slower than usual calls may get before the limit goes down
+		private double tolerance = 2.0;
+		private int queueCapacity = 1_000;
+		// about how many library latencies a call may wait for the limit, which must fit in the deadline
+		private int queueRoundTrips = 2;
+
+		public Limit(int initial, int min, int max) {
+			this.initial = initial;
+			this.min = min;
+			this.max = max;
+		}
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getInitial() {
+			return initial;
+		}
+
+		public void setInitial(int initial) {
+			this.initial = initial;
+		}
+
+		public int getMin() {
+			return min;
+		}
+
+		public void setMin(int min) {
+			this.min = min;
+		}
+
+		public int getMax() {
+			return max;
+		}
+
+		public void setMax(int max) {
+			this.max = max;
+		}
+
+		public double getTolerance() {
+			return tolerance;
+		}
+
+		public void setTolerance(double tolerance) {
+			this.tolerance = tolerance;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getQueueRoundTrips() {
+			return queueRoundTrips;
+		}
+
+		public void setQueueRoundTrips(int queueRoundTrips) {
+			this.queueRoundTrips = queueRoundTrips;
+		}
+	}
+
+}
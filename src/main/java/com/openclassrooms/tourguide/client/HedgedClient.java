@@ -0,0 +1,284 @@
+package com.openclassrooms.tourguide.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Calls one upstream library with a deadline, hedging the calls that are slower than usual.
+ * <p>
+ * Each call runs on the given executor once the client's {@link AdaptiveLimiter} lets it through.
+ * Once it has been running for longer than the library's recent latency at the configured
+ * percentile, and at least the minimum hedge delay, a duplicate call is issued and the first attempt
+ * to answer wins. The duplicates run on a small pool of their own without a queue; when every hedge
+ * thread is busy the duplicate is skipped and counted, so hedging cannot pile more load on a library
+ * that is slow for everyone.
+ * A call still unanswered at its deadline fails with a {@link TimeoutException}, the fallback being
+ * left to the caller. The deadline counts from the call, so the time spent waiting for the limit or in
+ * the executor queue uses it up too, and a call whose deadline passed before its turn is not run at all.
+ * The hedge delay counts from the time the first attempt starts running, since it is compared with the
+ * library's own latency. The libraries cannot be interrupted: a late attempt runs to its end and its
+ * result is dropped.
+ * <p>
+ * The latency percentile is taken over the last {@value #WINDOW_SIZE} first attempts and updated every
+ * {@value #UPDATE_INTERVAL} calls; nothing is hedged before the first update. Call latencies are reported
+ * as {@code tourguide.client.latency}, tagged with the client name and the outcome ({@code success},
+ * {@code hedged} when the duplicate won, {@code timeout} or {@code failure}), hedges as
+ * {@code tourguide.client.hedges}, the hedges skipped as {@code tourguide.client.hedges.skipped} and the
+ * current hedge delay as {@code tourguide.client.hedge.delay}.
+ */
+public class HedgedClient implements AutoCloseable {
+	private static final int WINDOW_SIZE = 1024;
+	private static final int UPDATE_INTERVAL = 128;
+	// deadlines and hedges of every client are scheduled on one thread; cancelled ones are dropped right away
+	private static final ScheduledThreadPoolExecutor timer = newTimer();
+
+	private final String name;
+	private final Executor executor;
+	private final AdaptiveLimiter limiter;
+	private final ThreadPoolExecutor hedgeExecutor;
+	private final long deadlineNanos;
+	private final double hedgePercentile;
+	private final long minHedgeDelayNanos;
+	private final long[] window = new long[WINDOW_SIZE];
+	private final AtomicLong samples = new AtomicLong();
+	// negative until the first update
+	private volatile long hedgeDelayNanos = -1;
+	private final Timer successTimer;
+	private final Timer hedgedTimer;
+	private final Timer timeoutTimer;
+	private final Timer failureTimer;
+	private final Counter hedges;
+	private final Counter skippedHedges;
+
+	/**
+	 * @param name The name of the client, used in the meter tags and thread names.
+	 * @param executor The executor the calls run on.
+	 * @param spec The deadline, hedging and limit settings.
+	 * @param metrics The meters the client reports to.
+	 */
+	public HedgedClient(String name, Executor executor, ClientProperties.Spec spec, TourGuideMetrics metrics) {
+		this.name = name;
+		this.executor = executor;
+		this.limiter = new AdaptiveLimiter(name, executor, spec.getLimit(), metrics);
+		this.hedgeExecutor = spec.isHedge() ? TrackingExecutors.newHedgeExecutor(name, spec.getMaxConcurrentHedges())
+				: null;
+		this.deadlineNanos = spec.getDeadline().toNanos();
+		this.hedgePercentile = spec.getHedgePercentile();
+		this.minHedgeDelayNanos = spec.getMinHedgeDelay().toNanos();
+
+		String description = "Time from the start of a call until its first answer, its deadline or its failure";
+		successTimer = metrics.timer("tourguide.client.latency", description, Tags.of("client", name, "outcome", "success"));
+		hedgedTimer = metrics.timer("tourguide.client.latency", description, Tags.of("client", name, "outcome", "hedged"));
+		timeoutTimer = metrics.timer("tourguide.client.latency", description, Tags.of("client", name, "outcome", "timeout"));
+		failureTimer = metrics.timer("tourguide.client.latency", description, Tags.of("client", name, "outcome", "failure"));
+		hedges = metrics.counter("tourguide.client.hedges", "Duplicate calls issued because the first one was slow",
+				Tags.of("client", name));
+		skippedHedges = metrics.counter("tourguide.client.hedges.skipped",
+				"Duplicate calls not issued because every hedge thread was busy", Tags.of("client", name));
+		metrics.gauge("tourguide.client.hedge.delay", "Time in ms after which a call is hedged, -1 while not hedging",
+				Tags.of("client", name), this, client -> client.hedgeDelayNanos < 0 ? -1 : client.hedgeDelayNanos / 1e6);
+	}
+
+	/**
+	 * Calls the library without blocking.
+	 *
+	 * @param request The library call; it may be run twice when hedged.
+	 * @return A future of the first answer, failed with a {@link TimeoutException} if none came before the deadline.
+	 */
+	public <T> CompletableFuture<T> call(Supplier<T> request) {
+		Call<T> call = new Call<>(request);
+		call.deadline = timer.schedule(call::expire, deadlineNanos, TimeUnit.NANOSECONDS);
+		try {
+			limiter.call(call::firstAttempt).whenComplete(call::firstAttemptDone);
+		} catch (RejectedExecutionException e) {
+			call.fail(e);
+		}
+		return call.result;
+	}
+
+	/**
+	 * @return The executor the calls run on.
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return The limiter the first attempts go through.
+	 */
+	public AdaptiveLimiter getLimiter() {
+		return limiter;
+	}
+
+	/**
+	 * @return How long a call runs before it is hedged, or {@code null} while calls are not hedged.
+	 */
+	public Duration getHedgeDelay() {
+		long delay = hedgeDelayNanos;
+		return delay < 0 ? null : Duration.ofNanos(delay);
+	}
+
+	/**
+	 * Stops the hedge threads; calls still in flight complete normally.
+	 */
+	@Override
+	public void close() {
+		if (hedgeExecutor != null) {
+			hedgeExecutor.shutdown();
+		}
+	}
+
+	private void recordLatency(long nanos) {
+		long count = samples.incrementAndGet();
+		window[(int) ((count - 1) % WINDOW_SIZE)] = nanos;
+		if (hedgeExecutor != null && count % UPDATE_INTERVAL == 0) {
+			long[] sorted = Arrays.copyOf(window, (int) Math.min(count, WINDOW_SIZE));
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(hedgePercentile * sorted.length) - 1;
+			hedgeDelayNanos = Math.max(sorted[Math.max(0, Math.min(rank, sorted.length - 1))], minHedgeDelayNanos);
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor newTimer() {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "client-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		return timer;
+	}
+
+	/**
+	 * One call and its attempts; the result completes with the first answer, or with a failure once no attempt is left.
+	 */
+	private class Call<T> {
+		private final Supplier<T> request;
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+		private final AtomicInteger pendingAttempts = new AtomicInteger(1);
+		private volatile Throwable failure;
+		private final long startNanos = System.nanoTime();
+		private volatile ScheduledFuture<?> deadline;
+		private volatile ScheduledFuture<?> hedge;
+
+		Call(Supplier<T> request) {
+			this.request = request;
+		}
+
+		T firstAttempt() {
+			if (result.isDone()) {
+				// timed out while waiting for its turn, nobody is left for the answer
+				return null;
+			}
+			long attemptStart = System.nanoTime();
+			long hedgeDelay = hedgeDelayNanos;
+			if (hedgeExecutor != null && hedgeDelay >= 0) {
+				hedge = timer.schedule(this::hedge, hedgeDelay, TimeUnit.NANOSECONDS);
+			}
+			T value = request.get();
+			recordLatency(System.nanoTime() - attemptStart);
+			return value;
+		}
+
+		void firstAttemptDone(T value, Throwable e) {
+			if (e == null) {
+				if (result.complete(value)) {
+					finish(successTimer);
+				}
+			} else {
+				attemptFailed((e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e);
+			}
+		}
+
+		private void hedge() {
+			if (result.isDone()) {
+				return;
+			}
+			// counted before it runs, so that a failing first attempt does not fail the call meanwhile
+			pendingAttempts.incrementAndGet();
+			try {
+				hedgeExecutor.execute(this::hedgeAttempt);
+			} catch (RejectedExecutionException e) {
+				skipHedge();
+				return;
+			}
+			hedges.increment();
+		}
+
+		/**
+		 * Every hedge thread is busy, or the client is closed: no duplicate is issued and the first
+		 * attempt is left to answer alone.
+		 */
+		private void skipHedge() {
+			skippedHedges.increment();
+			if (pendingAttempts.decrementAndGet() == 0) {
+				fail(failure);
+			}
+		}
+
+		private void hedgeAttempt() {
+			T value;
+			try {
+				value = request.get();
+			} catch (RuntimeException e) {
+				attemptFailed(e);
+				return;
+			}
+			if (result.complete(value)) {
+				finish(hedgedTimer);
+			}
+		}
+
+		private void attemptFailed(Throwable e) {
+			failure = e;
+			if (pendingAttempts.decrementAndGet() == 0) {
+				fail(e);
+			}
+		}
+
+		private void expire() {
+			if (result.completeExceptionally(new TimeoutException(
+					name + " call exceeded its deadline of " + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + " ms"))) {
+				finish(timeoutTimer);
+			}
+		}
+
+		private void fail(Throwable e) {
+			if (result.completeExceptionally(e)) {
+				finish(failureTimer);
+			}
+		}
+
+		private void finish(Timer outcome) {
+			outcome.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+			cancel(deadline);
+			cancel(hedge);
+		}
+
+		private void cancel(ScheduledFuture<?> task) {
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Sizing of the shared tracking executor, bound from the {@code tourguide.executor.*} properties,
+ * of the TripPricer pool, bound from {@code tourguide.executor.pricing.*}, and of the pool streamed
+ * responses are written from, bound from {@code tourguide.executor.streaming.*}.
+ */
+@ConfigurationProperties(prefix = "tourguide.executor")
+public class ExecutorProperties {
+
+	public enum RejectionPolicy {
+		/** The submitting thread runs the task itself, which slows producers down. */
+		CALLER_RUNS,
+		/** The task is refused with a {@link java.util.concurrent.RejectedExecutionException}. */
+		ABORT
+	}
+
+	private int poolSize = 256;
+	private int queueCapacity = 10_000;
+	private Duration keepAlive = Duration.ofSeconds(60);
+	private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+	private boolean virtualThreads = false;
+	private final Pricing pricing = new Pricing();
+	private final Streaming streaming = new Streaming();
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public Duration getKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(Duration keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public RejectionPolicy getRejectionPolicy() {
+		return rejectionPolicy;
+	}
+
+	public void setRejectionPolicy(RejectionPolicy rejectionPolicy) {
+		this.rejectionPolicy = rejectionPolicy;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public Pricing getPricing() {
+		return pricing;
+	}
+
+	public Streaming getStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Sizing of the pool the TripPricer calls run on, kept apart so that pricing never waits behind tracking.
+	 */
+	public static class Pricing {
+		private int poolSize = 32;
+		private int queueCapacity = 1_000;
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+	}
+
+	/**
+	 * Sizing of the pool the server-sent events and streamed batch lines are written from, so that a
+	 * slow client never holds a tracking thread.
+	 */
+	public static class Streaming {
+		private int poolSize = 16;
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+	}
+
+}
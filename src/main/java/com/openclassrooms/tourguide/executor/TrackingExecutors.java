@@ -0,0 +1,133 @@
+package com.openclassrooms.tourguide.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the executor shared by the Tracker, location tracking and reward calculation, the
+ * pool the TripPricer calls run on, the pool streamed responses are written from and the pools
+ * hedged upstream calls run on.
+ */
+public final class TrackingExecutors {
+	private static final Logger logger = LoggerFactory.getLogger(TrackingExecutors.class);
+	private static final AtomicInteger poolNumber = new AtomicInteger();
+
+	private TrackingExecutors() {
+	}
+
+	/**
+	 * Creates the shared executor described by the given properties.
+	 * <p>
+	 * Platform threads are used by default: a fixed number of worker threads, idle ones
+	 * being released after the keep-alive, in front of a bounded queue. Once the queue is
+	 * full the rejection policy applies, {@code CALLER_RUNS} pushing the work back onto the
+	 * submitting thread so that producers slow down instead of piling up tasks.
+	 * <p>
+	 * When virtual threads are requested and the runtime provides them (Java 21+), one
+	 * virtual thread is started per task instead; otherwise the platform pool is used.
+	 *
+	 * @param properties The executor sizing.
+	 * @return A new executor, to be shut down by its owner.
+	 */
+	public static ExecutorService newExecutor(ExecutorProperties properties) {
+		if (properties.isVirtualThreads()) {
+			ExecutorService virtualExecutor = newVirtualThreadExecutor();
+			if (virtualExecutor != null) {
+				logger.info("Tracking executor uses virtual threads");
+				return virtualExecutor;
+			}
+			logger.warn("Virtual threads are not available on Java {}, using a platform thread pool",
+					Runtime.version().feature());
+		}
+
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+				properties.getKeepAlive().toMillis(), TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(properties.getQueueCapacity()), newThreadFactory("tracking"),
+				newRejectionHandler(properties.getRejectionPolicy()));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates the pool the TripPricer calls run on: a fixed number of platform threads in front
+	 * of a bounded queue. Once the queue is full the submitting thread prices the trip itself.
+	 *
+	 * @param properties The pool sizing.
+	 * @return A new executor, to be shut down by its owner.
+	 */
+	public static ExecutorService newPricingExecutor(ExecutorProperties.Pricing properties) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+				60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+				newThreadFactory("pricing"), new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates the pool streamed responses are written from: a fixed number of platform threads, since
+	 * writing to a slow client blocks. Each response queues at most one task at a time, so the queue
+	 * is left unbounded.
+	 *
+	 * @param properties The pool sizing.
+	 * @return A new executor, to be shut down by its owner.
+	 */
+	public static ExecutorService newStreamingExecutor(ExecutorProperties.Streaming properties) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory("streaming"));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * Creates the pool the hedged duplicates of one client's calls run on. It has no queue: once
+	 * every thread is busy further tasks are rejected, so that hedging backs off under load.
+	 *
+	 * @param client The name of the client, used in the thread names.
+	 * @param maxThreads The number of hedged calls that may be in flight together.
+	 * @return A new executor, to be shut down by its owner.
+	 */
+	public static ThreadPoolExecutor newHedgeExecutor(String client, int maxThreads) {
+		return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+				newThreadFactory("hedge-" + client), new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory newThreadFactory(String name) {
+		String prefix = name + "-" + poolNumber.incrementAndGet() + "-";
+		AtomicInteger threadNumber = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static RejectedExecutionHandler newRejectionHandler(ExecutorProperties.RejectionPolicy policy) {
+		switch (policy) {
+		case ABORT:
+			return new ThreadPoolExecutor.AbortPolicy();
+		case CALLER_RUNS:
+		default:
+			return new ThreadPoolExecutor.CallerRunsPolicy();
+		}
+	}
+
+}
@@ -4,6 +4,9 @@ public class InternalTestHelper {
 
 	// Set this default up to 100,000 for testing
 	private static int internalUserNumber = 100;
+	// the same seed always generates the same internal users
+	private static long seed = 20230701L;
+	private static int historyDepth = 3;
 	
 	public static void setInternalUserNumber(int internalUserNumber) {
 		InternalTestHelper.internalUserNumber = internalUserNumber;
@@ -12,4 +15,20 @@ public class InternalTestHelper {
 	public static int getInternalUserNumber() {
 		return internalUserNumber;
 	}
+
+	public static void setSeed(long seed) {
+		InternalTestHelper.seed = seed;
+	}
+
+	public static long getSeed() {
+		return seed;
+	}
+
+	public static void setHistoryDepth(int historyDepth) {
+		InternalTestHelper.historyDepth = historyDepth;
+	}
+
+	public static int getHistoryDepth() {
+		return historyDepth;
+	}
 }
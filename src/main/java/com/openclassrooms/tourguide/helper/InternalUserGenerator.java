@@ -0,0 +1,105 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Generates the internal users of the test mode.
+ * <p>
+ * Each user is drawn from its own {@link SplittableRandom}, seeded from the generator seed and
+ * the user index, so a user only depends on the seed and its index: the same seed gives the same
+ * users, ids and location history included, whatever the number of threads generating them.
+ * Users are generated in parallel and returned in index order. Visit times are drawn within the
+ * last 30 days of the generator's reference time.
+ */
+public class InternalUserGenerator {
+	private static final double MAX_LATITUDE = 85.05112878;
+	private static final double MAX_LONGITUDE = 180;
+	private static final int HISTORY_DAYS = 30;
+	private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+	private final long seed;
+	private final int historyDepth;
+	private final LocationRetention locationRetention;
+	private final long referenceTimeMillis;
+
+	/**
+	 * Generates users with the seed and history depth of {@link InternalTestHelper}.
+	 */
+	public InternalUserGenerator(LocationRetention locationRetention) {
+		this(InternalTestHelper.getSeed(), InternalTestHelper.getHistoryDepth(), locationRetention,
+				System.currentTimeMillis());
+	}
+
+	/**
+	 * @param seed The seed the users are derived from.
+	 * @param historyDepth The number of visited locations generated per user.
+	 * @param locationRetention How much history the generated users keep.
+	 * @param referenceTimeMillis The time the visits are dated back from.
+	 */
+	public InternalUserGenerator(long seed, int historyDepth, LocationRetention locationRetention,
+			long referenceTimeMillis) {
+		if (historyDepth < 0) {
+			throw new IllegalArgumentException("historyDepth must not be negative: " + historyDepth);
+		}
+		this.seed = seed;
+		this.historyDepth = historyDepth;
+		this.locationRetention = locationRetention;
+		this.referenceTimeMillis = referenceTimeMillis;
+	}
+
+	/**
+	 * Generates the users 0 to count - 1 in parallel.
+	 *
+	 * @param count The number of users to generate.
+	 * @return The users, in index order.
+	 */
+	public List<User> generate(int count) {
+		User[] users = new User[count];
+		IntStream.range(0, count).parallel().forEach(i -> users[i] = generateUser(i));
+		return Arrays.asList(users);
+	}
+
+	/**
+	 * @param index The index of the user, which also makes its name.
+	 * @return The user of the given index, always the same one for the same seed.
+	 */
+	public User generateUser(int index) {
+		SplittableRandom random = new SplittableRandom(mix(seed + index * 0x9E3779B97F4A7C15L));
+		String userName = "internalUser" + index;
+		User user = new User(randomUUID(random), userName, "000", userName + "@tourGuide.com", locationRetention);
+		for (int i = 0; i < historyDepth; i++) {
+			Location location = new Location(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE),
+					random.nextDouble(-MAX_LONGITUDE, MAX_LONGITUDE));
+			Date timeVisited = new Date(referenceTimeMillis - random.nextInt(HISTORY_DAYS) * DAY_MILLIS);
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, timeVisited));
+		}
+		return user;
+	}
+
+	// a version 4 UUID whose random bits come from the user's generator
+	private static UUID randomUUID(SplittableRandom random) {
+		long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+		long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+		return new UUID(mostSigBits, leastSigBits);
+	}
+
+	// spreads neighbouring indexes over unrelated seeds
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.openclassrooms.tourguide.location;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.client.HedgedClient;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * {@link LocationProvider} backed by {@link GpsUtil}, which only locates one user per call.
+ * <p>
+ * A batch is answered by issuing the individual calls concurrently on the given executor and
+ * gathering them into one result, so callers deal with one request per batch.
+ * <p>
+ * Calls go through a {@link HedgedClient}: a slow call is hedged and a call past its deadline
+ * fails, so one stuck call cannot hold back a whole batch. Users not located in time are left
+ * out of the batch result and located again on their next tracking.
+ */
+public class GpsUtilLocationProvider implements LocationProvider {
+	private Logger logger = LoggerFactory.getLogger(GpsUtilLocationProvider.class);
+	private final GpsUtil gpsUtil;
+	private final HedgedClient client;
+	private final TourGuideMetrics metrics;
+
+	public GpsUtilLocationProvider(GpsUtil gpsUtil, Executor executor, TourGuideMetrics metrics) {
+		this(gpsUtil, new HedgedClient("gps", executor, new ClientProperties().getGps(), metrics), metrics);
+	}
+
+	public GpsUtilLocationProvider(GpsUtil gpsUtil, HedgedClient client, TourGuideMetrics metrics) {
+		this.gpsUtil = gpsUtil;
+		this.client = client;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public CompletableFuture<VisitedLocation> getUserLocationAsync(UUID userId) {
+		return client.call(() -> metrics.getGpsLocationTimer().record(() -> gpsUtil.getUserLocation(userId)));
+	}
+
+	@Override
+	public CompletableFuture<Map<UUID, VisitedLocation>> getUserLocations(Collection<UUID> userIds) {
+		Map<UUID, VisitedLocation> locations = new ConcurrentHashMap<>(userIds.size() * 4 / 3 + 1);
+		CompletableFuture<?>[] futures = userIds.stream()
+				.map(userId -> getUserLocationAsync(userId).handle((visitedLocation, e) -> {
+					if (e instanceof TimeoutException || e != null && e.getCause() instanceof TimeoutException) {
+						logger.warn("Location of user " + userId + " is unavailable: " + e.getMessage());
+					} else if (e != null) {
+						logger.warn("Location of user " + userId + " is unavailable", e);
+					} else if (visitedLocation != null) {
+						locations.put(userId, visitedLocation);
+					}
+					return null;
+				}))
+				.toArray(CompletableFuture[]::new);
+		return CompletableFuture.allOf(futures).thenApply(ignored -> locations);
+	}
+
+}
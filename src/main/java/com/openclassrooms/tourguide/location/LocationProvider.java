@@ -0,0 +1,29 @@
+package com.openclassrooms.tourguide.location;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Source of the users' current locations.
+ */
+public interface LocationProvider {
+
+	/**
+	 * @param userId The user to locate.
+	 * @return A future of the user's current location.
+	 */
+	CompletableFuture<VisitedLocation> getUserLocationAsync(UUID userId);
+
+	/**
+	 * Locates many users with a single request.
+	 *
+	 * @param userIds The users to locate.
+	 * @return A future of the current location of each user; users that could not be located are left out.
+	 */
+	CompletableFuture<Map<UUID, VisitedLocation>> getUserLocations(Collection<UUID> userIds);
+
+}
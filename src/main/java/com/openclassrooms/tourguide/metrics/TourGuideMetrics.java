@@ -0,0 +1,163 @@
+package com.openclassrooms.tourguide.metrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToDoubleFunction;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * The meters of the tracking and rewards pipelines, one per stage, so the slowest dependency
+ * shows up directly under load.
+ * <p>
+ * Timers measure the calls to GpsUtil, RewardCentral and TripPricer, a user's reward calculation
+ * and each Tracker batch. Gauges report the users in flight, the Tracker lag and the executor
+ * queue; rejected executor tasks are counted. Meters shared by several components, such as those
+ * of the upstream clients, are told apart by tags. All meters are named {@code tourguide.*}, so their
+ * percentile histograms can be turned on with a single
+ * {@code management.metrics.distribution.percentiles-histogram.tourguide} property.
+ */
+public class TourGuideMetrics {
+	private final MeterRegistry registry;
+	private final Timer gpsLocationTimer;
+	private final Timer rewardCentralTimer;
+	private final Timer tripPricerTimer;
+	private final Timer rewardCalculationTimer;
+	private final Timer trackerBatchTimer;
+	private final DistributionSummary trackerBatchSize;
+
+	/**
+	 * Registers the meters with Micrometer's global registry, which discards them unless a registry is added to it.
+	 */
+	public TourGuideMetrics() {
+		this(Metrics.globalRegistry);
+	}
+
+	public TourGuideMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		gpsLocationTimer = Timer.builder("tourguide.gps.location")
+				.description("Time GpsUtil takes to locate one user")
+				.register(registry);
+		rewardCentralTimer = Timer.builder("tourguide.rewardcentral.points")
+				.description("Time RewardCentral takes to grant the points of one attraction, cache misses only")
+				.register(registry);
+		tripPricerTimer = Timer.builder("tourguide.trippricer.price")
+				.description("Time TripPricer takes to price the trip deals of one user")
+				.register(registry);
+		rewardCalculationTimer = Timer.builder("tourguide.rewards.calculation")
+				.description("Time from the start of a user's reward calculation until all new rewards are added")
+				.register(registry);
+		trackerBatchTimer = Timer.builder("tourguide.tracker.batch")
+				.description("Time the Tracker takes to locate a batch of users and calculate their rewards")
+				.register(registry);
+		trackerBatchSize = DistributionSummary.builder("tourguide.tracker.batch.size")
+				.description("Number of users tracked by one Tracker batch")
+				.baseUnit("users")
+				.register(registry);
+	}
+
+	public MeterRegistry getRegistry() {
+		return registry;
+	}
+
+	public Timer getGpsLocationTimer() {
+		return gpsLocationTimer;
+	}
+
+	public Timer getRewardCentralTimer() {
+		return rewardCentralTimer;
+	}
+
+	public Timer getTripPricerTimer() {
+		return tripPricerTimer;
+	}
+
+	public Timer getRewardCalculationTimer() {
+		return rewardCalculationTimer;
+	}
+
+	public Timer getTrackerBatchTimer() {
+		return trackerBatchTimer;
+	}
+
+	public DistributionSummary getTrackerBatchSize() {
+		return trackerBatchSize;
+	}
+
+	/**
+	 * Registers a gauge read from the given object, which is only weakly referenced.
+	 */
+	public <T> void gauge(String name, String description, T object, ToDoubleFunction<T> value) {
+		Gauge.builder(name, object, value).description(description).register(registry);
+	}
+
+	/**
+	 * Registers a gauge with the given tags, read from the given object, which is only weakly referenced.
+	 */
+	public <T> void gauge(String name, String description, Tags tags, T object, ToDoubleFunction<T> value) {
+		Gauge.builder(name, object, value).description(description).tags(tags).register(registry);
+	}
+
+	/**
+	 * Registers a counter.
+	 */
+	public Counter counter(String name, String description) {
+		return counter(name, description, Tags.empty());
+	}
+
+	/**
+	 * Registers a counter with the given tags.
+	 */
+	public Counter counter(String name, String description, Tags tags) {
+		return Counter.builder(name).description(description).tags(tags).register(registry);
+	}
+
+	/**
+	 * Registers a timer with the given tags.
+	 */
+	public Timer timer(String name, String description, Tags tags) {
+		return Timer.builder(name).description(description).tags(tags).register(registry);
+	}
+
+	/**
+	 * Reports the pool size, active threads and queue depth of an executor, and counts the tasks
+	 * it rejects. With the {@code CALLER_RUNS} policy a rejection means the submitting thread was
+	 * made to run the task itself, i.e. the queue was full and backpressure kicked in.
+	 *
+	 * @param executor The executor to monitor; only a {@link ThreadPoolExecutor} has its rejections counted.
+	 * @param name The value of the {@code name} tag of the executor meters.
+	 */
+	public void monitorExecutor(ExecutorService executor, String name) {
+		new ExecutorServiceMetrics(executor, name, "tourguide", Tags.empty()).bindTo(registry);
+		if (executor instanceof ThreadPoolExecutor threadPoolExecutor) {
+			Counter rejected = Counter.builder("tourguide.executor.rejected")
+					.description("Tasks rejected because the executor queue was full")
+					.tag("name", name)
+					.register(registry);
+			RejectedExecutionHandler handler = threadPoolExecutor.getRejectedExecutionHandler();
+			threadPoolExecutor.setRejectedExecutionHandler((runnable, pool) -> {
+				rejected.increment();
+				handler.rejectedExecution(runnable, pool);
+			});
+		}
+	}
+
+	/**
+	 * Reports the size, hit, miss and eviction counts of a Caffeine cache.
+	 */
+	public void monitorCache(AsyncCache<?, ?> cache, String name) {
+		CaffeineCacheMetrics.monitor(registry, cache, name);
+	}
+
+}
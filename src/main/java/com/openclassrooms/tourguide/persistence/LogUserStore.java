@@ -0,0 +1,385 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRepository;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Embedded {@link UserStore}: an append-only log of the changes plus periodic snapshots of every
+ * user, both in a compact binary format, in a local directory.
+ * <p>
+ * Changes are queued and written by a single background thread in batches, one flush per batch, so
+ * the tracking path never waits for the disk. Should the queue be full, the change is dropped and a
+ * snapshot requested instead, the snapshot being taken from the users in memory.
+ * <p>
+ * Files come in generations: a snapshot of generation N holds every user as of the moment the log of
+ * generation N was started. Taking a snapshot starts a new log generation, writes the snapshot next
+ * to it, then deletes the older files. On open, the latest snapshot is loaded and the logs from its
+ * generation on are replayed. Replaying is idempotent (locations carry their sequence number, rewards
+ * are unique per attraction), so changes already part of a snapshot do no harm when replayed.
+ */
+public class LogUserStore implements UserStore {
+	private static final Logger logger = LoggerFactory.getLogger(LogUserStore.class);
+	private static final int MAGIC = 0x54475553; // "TGUS"
+	private static final int VERSION = 1;
+	private static final byte USER = 1;
+	private static final byte LOCATION = 2;
+	private static final byte REWARDS = 3;
+	private static final Pattern FILE_NAME = Pattern.compile("(snapshot|log)-(\\d+)\\.bin");
+	private static final Change CLOSE = out -> {
+	};
+	// wakes the writer up without writing anything
+	private static final Change WAKE_UP = out -> {
+	};
+
+	private final Path directory;
+	private final long snapshotIntervalNanos;
+	private final int batchSize;
+	private final boolean sync;
+	private final BlockingQueue<Change> changes;
+	private final LongAdder droppedChanges = new LongAdder();
+	private volatile boolean snapshotRequested;
+	// changes written since the last snapshot, owned by the writer thread
+	private boolean dirty;
+	private volatile boolean closed;
+	private UserRepository users;
+	private Thread writer;
+	// owned by the writer thread once opened
+	private long generation;
+	private FileOutputStream logFile;
+	private DataOutputStream log;
+
+	public LogUserStore(Path directory, long snapshotIntervalMillis, int queueCapacity, int batchSize, boolean sync) {
+		this.directory = directory;
+		this.snapshotIntervalNanos = TimeUnit.MILLISECONDS.toNanos(snapshotIntervalMillis);
+		this.batchSize = batchSize;
+		this.sync = sync;
+		this.changes = new ArrayBlockingQueue<>(queueCapacity);
+	}
+
+	public LogUserStore(StoreProperties properties) {
+		this(properties.getDirectory(), properties.getSnapshotInterval().toMillis(), properties.getQueueCapacity(),
+				properties.getBatchSize(), properties.isSync());
+	}
+
+	@Override
+	public synchronized int open(UserRepository users, LocationRetention retention,
+			Function<String, Attraction> attractions) {
+		if (this.users != null) {
+			throw new IllegalStateException("The user store is already open");
+		}
+		this.users = users;
+		long start = System.nanoTime();
+		try {
+			Files.createDirectories(directory);
+			TreeMap<Long, Path> snapshots = new TreeMap<>();
+			TreeMap<Long, Path> logs = new TreeMap<>();
+			try (Stream<Path> files = Files.list(directory)) {
+				files.forEach(file -> {
+					Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+					if (matcher.matches()) {
+						(matcher.group(1).equals("snapshot") ? snapshots : logs).put(Long.parseLong(matcher.group(2)), file);
+					}
+				});
+			}
+
+			long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+			if (!snapshots.isEmpty()) {
+				readSnapshot(snapshots.lastEntry().getValue(), retention, attractions);
+			}
+			for (Path logPath : logs.tailMap(snapshotGeneration, true).values()) {
+				replayLog(logPath, retention, attractions);
+			}
+
+			generation = Math.max(snapshotGeneration, logs.isEmpty() ? 0 : logs.lastKey()) + 1;
+			openLog();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open the user store in " + directory, e);
+		}
+		logger.info("Loaded " + users.size() + " users from " + directory + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+		writer = new Thread(this::run, "user-store-writer");
+		writer.setDaemon(true);
+		writer.start();
+		return users.size();
+	}
+
+	@Override
+	public void userAdded(User user) {
+		enqueue(out -> {
+			out.writeByte(USER);
+			UserCodec.writeUser(out, user);
+		});
+	}
+
+	@Override
+	public void locationAdded(User user, long sequence, VisitedLocation visitedLocation) {
+		UUID userId = user.getUserId();
+		double latitude = visitedLocation.location.latitude;
+		double longitude = visitedLocation.location.longitude;
+		long timeMillis = visitedLocation.timeVisited.getTime();
+		enqueue(out -> {
+			out.writeByte(LOCATION);
+			UserCodec.writeUuid(out, userId);
+			UserCodec.writeLocation(out, sequence, latitude, longitude, timeMillis);
+		});
+	}
+
+	@Override
+	public void rewardsAdded(User user, List<UserReward> userRewards) {
+		UUID userId = user.getUserId();
+		long evaluatedLocationCount = user.getEvaluatedLocationCount();
+		enqueue(out -> {
+			out.writeByte(REWARDS);
+			UserCodec.writeUuid(out, userId);
+			out.writeLong(evaluatedLocationCount);
+			UserCodec.writeRewards(out, userRewards);
+		});
+	}
+
+	@Override
+	public void requestSnapshot() {
+		snapshotRequested = true;
+		changes.offer(WAKE_UP);
+	}
+
+	/**
+	 * @return The number of changes dropped because the queue was full, each one followed by a snapshot.
+	 */
+	public long getDroppedChanges() {
+		return droppedChanges.sum();
+	}
+
+	/**
+	 * Writes the pending changes and stops the writer thread.
+	 */
+	@Override
+	public void close() {
+		Thread writer;
+		synchronized (this) {
+			if (closed || this.writer == null) {
+				closed = true;
+				return;
+			}
+			closed = true;
+			writer = this.writer;
+		}
+		try {
+			changes.put(CLOSE);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void enqueue(Change change) {
+		if (closed || users == null) {
+			return;
+		}
+		if (!changes.offer(change)) {
+			droppedChanges.increment();
+			snapshotRequested = true;
+		}
+	}
+
+	private void run() {
+		List<Change> batch = new ArrayList<>(batchSize);
+		long nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+		boolean running = true;
+		while (running) {
+			try {
+				Change change = changes.poll(Math.max(0, nextSnapshot - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (change != null) {
+					batch.add(change);
+					changes.drainTo(batch, batchSize - 1);
+					running = !batch.remove(CLOSE);
+					write(batch);
+					batch.clear();
+				}
+				if (snapshotRequested || System.nanoTime() - nextSnapshot >= 0) {
+					if (snapshotRequested || dirty) {
+						snapshotRequested = false;
+						snapshot();
+					}
+					nextSnapshot = System.nanoTime() + snapshotIntervalNanos;
+				}
+			} catch (InterruptedException e) {
+				running = false;
+			} catch (IOException | RuntimeException e) {
+				logger.error("User store write failed, the next snapshot will recover the lost changes", e);
+				batch.clear();
+				snapshotRequested = true;
+			}
+		}
+		try {
+			log.close();
+		} catch (IOException e) {
+			logger.warn("Cannot close the user store log", e);
+		}
+		logger.debug("User store writer stopping");
+	}
+
+	private void write(List<Change> batch) throws IOException {
+		for (Change change : batch) {
+			change.writeTo(log);
+		}
+		log.flush();
+		if (sync) {
+			logFile.getFD().sync();
+		}
+		dirty = true;
+	}
+
+	private void snapshot() throws IOException {
+		long start = System.nanoTime();
+		// changes from now on go to the new log, the snapshot covers the older ones
+		log.close();
+		generation++;
+		openLog();
+
+		Path snapshotPath = path("snapshot", generation);
+		Path temporaryPath = directory.resolve(snapshotPath.getFileName() + ".tmp");
+		int[] count = new int[1];
+		try (FileOutputStream file = new FileOutputStream(temporaryPath.toFile());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			writeHeader(out);
+			IOException[] failure = new IOException[1];
+			users.forEach(user -> {
+				if (failure[0] == null) {
+					try {
+						out.writeBoolean(true);
+						UserCodec.writeUser(out, user);
+						count[0]++;
+					} catch (IOException e) {
+						failure[0] = e;
+					}
+				}
+			});
+			if (failure[0] != null) {
+				throw failure[0];
+			}
+			out.writeBoolean(false);
+			out.flush();
+			file.getFD().sync();
+		}
+		Files.move(temporaryPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		dirty = false;
+
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+				if (matcher.matches() && Long.parseLong(matcher.group(2)) < generation) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+		logger.debug("User store snapshot of " + count[0] + " users written in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+	}
+
+	private void openLog() throws IOException {
+		logFile = new FileOutputStream(path("log", generation).toFile(), true);
+		log = new DataOutputStream(new BufferedOutputStream(logFile, 1 << 16));
+		writeHeader(log);
+		log.flush();
+	}
+
+	private void readSnapshot(Path path, LocationRetention retention, Function<String, Attraction> attractions)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), 1 << 16))) {
+			readHeader(in, path);
+			while (in.readBoolean()) {
+				users.add(UserCodec.readUser(in, retention, attractions));
+			}
+		}
+	}
+
+	private void replayLog(Path path, LocationRetention retention, Function<String, Attraction> attractions)
+			throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile()), 1 << 16))) {
+			readHeader(in, path);
+			while (true) {
+				int type = in.read();
+				if (type < 0) {
+					return;
+				}
+				switch (type) {
+				case USER:
+					users.add(UserCodec.readUser(in, retention, attractions));
+					break;
+				case LOCATION:
+					UserCodec.readLocation(in, users.getById(UserCodec.readUuid(in)));
+					break;
+				case REWARDS: {
+					User user = users.getById(UserCodec.readUuid(in));
+					long evaluatedLocationCount = in.readLong();
+					UserCodec.readRewards(in, user, attractions);
+					if (user != null) {
+						user.markLocationsEvaluated(evaluatedLocationCount);
+					}
+					break;
+				}
+				default:
+					throw new IOException("Unknown change type " + type + " in " + path);
+				}
+			}
+		} catch (EOFException e) {
+			// the last change was only partly written before the process stopped
+			logger.warn("Ignoring a truncated change at the end of " + path);
+		}
+	}
+
+	private Path path(String kind, long generation) {
+		return directory.resolve(String.format("%s-%010d.bin", kind, generation));
+	}
+
+	private static void writeHeader(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	private static void readHeader(DataInputStream in, Path path) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException(path + " is not a user store file of version " + VERSION);
+		}
+	}
+
+	@FunctionalInterface
+	private interface Change {
+		void writeTo(DataOutputStream out) throws IOException;
+	}
+
+}
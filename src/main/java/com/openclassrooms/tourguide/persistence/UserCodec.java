@@ -0,0 +1,173 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Binary encoding of the users and their changes, shared by the snapshots and the log.
+ */
+final class UserCodec {
+
+	private UserCodec() {
+	}
+
+	static void writeUser(DataOutput out, User user) throws IOException {
+		writeUuid(out, user.getUserId());
+		out.writeUTF(user.getUserName());
+		writeNullableString(out, user.getPhoneNumber());
+		writeNullableString(out, user.getEmailAddress());
+		writePreferences(out, user.getUserPreferences());
+		out.writeLong(user.getEvaluatedLocationCount());
+
+		// one pass over a consistent copy of the retained locations, buffered to write their count first
+		ByteArrayOutputStream locations = new ByteArrayOutputStream();
+		DataOutputStream locationsOut = new DataOutputStream(locations);
+		int[] count = new int[1];
+		user.forEachVisitedLocation((sequence, latitude, longitude, timeMillis) -> {
+			try {
+				writeLocation(locationsOut, sequence, latitude, longitude, timeMillis);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			count[0]++;
+		});
+		out.writeInt(count[0]);
+		out.write(locations.toByteArray());
+
+		writeRewards(out, user.getUserRewards());
+	}
+
+	static User readUser(DataInput in, LocationRetention retention, Function<String, Attraction> attractions)
+			throws IOException {
+		User user = new User(readUuid(in), in.readUTF(), readNullableString(in), readNullableString(in), retention);
+		user.setUserPreferences(readPreferences(in));
+		long evaluatedLocationCount = in.readLong();
+		int locationCount = in.readInt();
+		for (int i = 0; i < locationCount; i++) {
+			readLocation(in, user);
+		}
+		readRewards(in, user, attractions);
+		user.markLocationsEvaluated(evaluatedLocationCount);
+		return user;
+	}
+
+	static void writeLocation(DataOutput out, long sequence, double latitude, double longitude, long timeMillis)
+			throws IOException {
+		out.writeLong(sequence);
+		out.writeDouble(latitude);
+		out.writeDouble(longitude);
+		out.writeLong(timeMillis);
+	}
+
+	/**
+	 * Reads a location and restores it into the user's history, or skips it if the user is null.
+	 */
+	static void readLocation(DataInput in, User user) throws IOException {
+		long sequence = in.readLong();
+		double latitude = in.readDouble();
+		double longitude = in.readDouble();
+		long timeMillis = in.readLong();
+		if (user != null) {
+			user.restoreVisitedLocation(sequence,
+					new VisitedLocation(user.getUserId(), new Location(latitude, longitude), new Date(timeMillis)));
+		}
+	}
+
+	static void writeRewards(DataOutput out, List<UserReward> userRewards) throws IOException {
+		out.writeInt(userRewards.size());
+		for (UserReward userReward : userRewards) {
+			Attraction attraction = userReward.attraction;
+			out.writeUTF(attraction.attractionName);
+			out.writeUTF(attraction.city);
+			out.writeUTF(attraction.state);
+			out.writeDouble(attraction.latitude);
+			out.writeDouble(attraction.longitude);
+			out.writeDouble(userReward.visitedLocation.location.latitude);
+			out.writeDouble(userReward.visitedLocation.location.longitude);
+			out.writeLong(userReward.visitedLocation.timeVisited.getTime());
+			out.writeInt(userReward.getRewardPoints());
+		}
+	}
+
+	/**
+	 * Reads rewards and adds them to the user, or skips them if the user is null.
+	 */
+	static void readRewards(DataInput in, User user, Function<String, Attraction> attractions) throws IOException {
+		int rewardCount = in.readInt();
+		for (int i = 0; i < rewardCount; i++) {
+			String attractionName = in.readUTF();
+			String city = in.readUTF();
+			String state = in.readUTF();
+			double latitude = in.readDouble();
+			double longitude = in.readDouble();
+			// the catalog's instance carries the attraction id RewardCentral knows in this run
+			Attraction attraction = attractions.apply(attractionName);
+			if (attraction == null) {
+				attraction = new Attraction(attractionName, city, state, latitude, longitude);
+			}
+			Location location = new Location(in.readDouble(), in.readDouble());
+			Date timeVisited = new Date(in.readLong());
+			int rewardPoints = in.readInt();
+			if (user != null) {
+				VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), location, timeVisited);
+				user.addUserReward(new UserReward(visitedLocation, attraction, rewardPoints));
+			}
+		}
+	}
+
+	static void writePreferences(DataOutput out, UserPreferences userPreferences) throws IOException {
+		out.writeInt(userPreferences.getAttractionProximity());
+		out.writeInt(userPreferences.getTripDuration());
+		out.writeInt(userPreferences.getTicketQuantity());
+		out.writeInt(userPreferences.getNumberOfAdults());
+		out.writeInt(userPreferences.getNumberOfChildren());
+	}
+
+	static UserPreferences readPreferences(DataInput in) throws IOException {
+		UserPreferences userPreferences = new UserPreferences();
+		userPreferences.setAttractionProximity(in.readInt());
+		userPreferences.setTripDuration(in.readInt());
+		userPreferences.setTicketQuantity(in.readInt());
+		userPreferences.setNumberOfAdults(in.readInt());
+		userPreferences.setNumberOfChildren(in.readInt());
+		return userPreferences;
+	}
+
+	static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+		out.writeLong(uuid.getMostSignificantBits());
+		out.writeLong(uuid.getLeastSignificantBits());
+	}
+
+	static UUID readUuid(DataInput in) throws IOException {
+		return new UUID(in.readLong(), in.readLong());
+	}
+
+	private static void writeNullableString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullableString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.persistence;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRepository;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Persists the users, their preferences, visited locations and rewards across restarts.
+ * <p>
+ * The change notifications are called from the tracking path; implementations must not block them.
+ */
+public interface UserStore extends AutoCloseable {
+
+	/** Keeps nothing: users only live in memory, as when no store is configured. */
+	UserStore NONE = new UserStore() {
+		@Override
+		public int open(UserRepository users, LocationRetention retention, Function<String, Attraction> attractions) {
+			return 0;
+		}
+
+		@Override
+		public void userAdded(User user) {
+		}
+
+		@Override
+		public void locationAdded(User user, long sequence, VisitedLocation visitedLocation) {
+		}
+
+		@Override
+		public void rewardsAdded(User user, List<UserReward> userRewards) {
+		}
+
+		@Override
+		public void requestSnapshot() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/**
+	 * Loads the stored users into the repository, then starts persisting changes; the repository is
+	 * also where complete snapshots of the users are taken from.
+	 *
+	 * @param users The repository to fill.
+	 * @param retention The location retention of the loaded users.
+	 * @param attractions Resolves the attraction of a stored reward from its name, or returns null if it is unknown.
+	 * @return The number of users loaded.
+	 */
+	int open(UserRepository users, LocationRetention retention, Function<String, Attraction> attractions);
+
+	void userAdded(User user);
+
+	void locationAdded(User user, long sequence, VisitedLocation visitedLocation);
+
+	/**
+	 * Records new rewards of a user, along with the user's rewards watermark.
+	 */
+	void rewardsAdded(User user, List<UserReward> userRewards);
+
+	/**
+	 * Asks for every user to be written out soon, e.g. after many of them were added at once.
+	 */
+	void requestSnapshot();
+
+	@Override
+	void close();
+
+}
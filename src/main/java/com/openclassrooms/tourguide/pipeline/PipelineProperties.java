@@ -0,0 +1,48 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Location to reward pipeline settings, bound from the {@code tourguide.pipeline.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.pipeline")
+public class PipelineProperties {
+
+	private boolean enabled = true;
+	private int bufferSize = 65_536;
+	private int consumers = 2;
+	private int batchSize = 1_024;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public int getConsumers() {
+		return consumers;
+	}
+
+	public void setConsumers(int consumers) {
+		this.consumers = consumers;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+}
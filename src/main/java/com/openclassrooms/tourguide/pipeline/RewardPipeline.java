@@ -0,0 +1,37 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Where tracking hands a user over once a new location has been recorded, for its rewards to be calculated.
+ */
+public interface RewardPipeline extends AutoCloseable {
+
+	/**
+	 * Requests the calculation of the user's rewards for the locations not evaluated yet.
+	 *
+	 * @param user The user who has new visited locations.
+	 * @return A future of the rewards added to the user, completed once every one of them has been added.
+	 */
+	CompletableFuture<List<UserReward>> publish(User user);
+
+	/**
+	 * Stops accepting users; the ones already published are still calculated.
+	 */
+	@Override
+	default void close() {
+	}
+
+	/**
+	 * @return A pipeline calculating the rewards right away, on the publishing thread.
+	 */
+	static RewardPipeline inline(RewardsService rewardsService) {
+		return rewardsService::calculateRewardsAsync;
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue over a power-of-two array of slots, for any number of producers and consumers.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the producer claiming a given
+ * position or holds an element for the consumer claiming it. Producers and consumers claim positions
+ * with a compare-and-set on their own counter, then publish the slot by advancing its sequence, so
+ * they never lock and only contend with their own kind. Slots are reused round after round: the queue
+ * allocates nothing once built.
+ */
+class RingBuffer<E> {
+	private final Object[] elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong producerPosition = new AtomicLong();
+	private final AtomicLong consumerPosition = new AtomicLong();
+
+	/**
+	 * @param capacity The number of slots, rounded up to a power of two.
+	 */
+	RingBuffer(int capacity) {
+		if (capacity < 2 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("capacity must be between 2 and 2^30: " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		elements = new Object[size];
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+	}
+
+	/**
+	 * @return false if the buffer is full.
+	 */
+	boolean offer(E element) {
+		long position = producerPosition.get();
+		int index;
+		while (true) {
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (producerPosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = producerPosition.get();
+			} else if (difference < 0) {
+				// the slot still holds the element of the previous round
+				return false;
+			} else {
+				position = producerPosition.get();
+			}
+		}
+		elements[index] = element;
+		sequences.set(index, position + 1);
+		return true;
+	}
+
+	/**
+	 * @return The oldest element, or null if the buffer is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		long position = consumerPosition.get();
+		int index;
+		while (true) {
+			index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (consumerPosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = consumerPosition.get();
+			} else if (difference < 0) {
+				return null;
+			} else {
+				position = consumerPosition.get();
+			}
+		}
+		E element = (E) elements[index];
+		elements[index] = null;
+		sequences.set(index, position + mask + 1);
+		return element;
+	}
+
+	/**
+	 * @return The number of elements waiting, approximate while producers or consumers are active.
+	 */
+	int size() {
+		long size = producerPosition.get() - consumerPosition.get();
+		return (int) Math.max(0, Math.min(size, elements.length));
+	}
+
+	int capacity() {
+		return elements.length;
+	}
+
+}
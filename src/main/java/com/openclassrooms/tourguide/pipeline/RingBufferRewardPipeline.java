@@ -0,0 +1,192 @@
+package com.openclassrooms.tourguide.pipeline;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import io.micrometer.core.instrument.Counter;
+
+/**
+ * Hands users over from tracking to reward calculation through a bounded {@link RingBuffer}.
+ * <p>
+ * Publishing only claims a slot, so location tracking never runs reward calculation itself. A few
+ * dedicated consumer threads drain the buffer in batches and start the calculation of each user
+ * once per batch, however many of its locations were published meanwhile; the reward point lookups
+ * then run on the shared tracking executor as usual. Idle consumers park until a publisher wakes
+ * one of them up, which publishers only do while some consumer is idle, so a busy pipeline costs
+ * neither locks nor wake-ups. When the buffer is full, publishers spin then park until a slot frees
+ * up, so tracking slows down to the pace of reward calculation instead of piling up work. The
+ * buffer depth is reported as {@code tourguide.pipeline.backlog} and the publisher waits are counted.
+ */
+public class RingBufferRewardPipeline implements RewardPipeline {
+	private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private static final int FULL_SPINS = 100;
+
+	private final Logger logger = LoggerFactory.getLogger(RingBufferRewardPipeline.class);
+	private final RewardsService rewardsService;
+	private final RingBuffer<RewardEvent> buffer;
+	private final int batchSize;
+	private final List<Thread> consumers = new ArrayList<>();
+	// consumers parked on an empty buffer, woken up one per user published
+	private final Queue<Thread> idleConsumers = new ConcurrentLinkedQueue<>();
+	private final Counter publisherWaits;
+	private volatile boolean closed;
+
+	public RingBufferRewardPipeline(RewardsService rewardsService, PipelineProperties properties,
+			TourGuideMetrics metrics) {
+		this.rewardsService = rewardsService;
+		this.buffer = new RingBuffer<>(properties.getBufferSize());
+		this.batchSize = properties.getBatchSize();
+		metrics.gauge("tourguide.pipeline.backlog", "Users waiting in the reward pipeline", buffer, RingBuffer::size);
+		publisherWaits = metrics.counter("tourguide.pipeline.publisher.waits",
+				"Times tracking waited for room in the full reward pipeline");
+		for (int i = 0; i < properties.getConsumers(); i++) {
+			Thread consumer = new Thread(this::consume, "reward-pipeline-" + (i + 1));
+			consumer.setDaemon(true);
+			consumer.start();
+			consumers.add(consumer);
+		}
+	}
+
+	/**
+	 * Publishes the user to the ring buffer, waiting while it is full. Once the pipeline is closed the
+	 * user is refused with a future failed with an {@link IllegalStateException}.
+	 */
+	@Override
+	public CompletableFuture<List<UserReward>> publish(User user) {
+		if (closed) {
+			return closedFailure();
+		}
+		RewardEvent event = new RewardEvent(user, new CompletableFuture<>());
+		int attempts = 0;
+		while (!buffer.offer(event)) {
+			if (closed) {
+				return closedFailure();
+			}
+			if (attempts++ < FULL_SPINS) {
+				Thread.onSpinWait();
+			} else {
+				if (attempts == FULL_SPINS + 1) {
+					publisherWaits.increment();
+				}
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+			}
+		}
+		if (closed) {
+			// closed meanwhile, its last drain may have missed the user: nobody else is left to take it
+			processRemaining();
+		} else {
+			Thread idleConsumer = idleConsumers.poll();
+			if (idleConsumer != null) {
+				LockSupport.unpark(idleConsumer);
+			}
+		}
+		return event.result();
+	}
+
+	/**
+	 * Stops the consumers, then starts the calculation of the users still in the buffer.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Thread consumer : consumers) {
+			LockSupport.unpark(consumer);
+			try {
+				consumer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		processRemaining();
+	}
+
+	private void consume() {
+		List<RewardEvent> batch = new ArrayList<>(batchSize);
+		while (!closed) {
+			if (drain(batch) == 0) {
+				awaitPublication();
+				continue;
+			}
+			process(batch);
+			batch.clear();
+		}
+	}
+
+	// registered as idle before looking at the buffer again, so that a user published meanwhile wakes it up
+	private void awaitPublication() {
+		Thread consumer = Thread.currentThread();
+		idleConsumers.add(consumer);
+		if (buffer.size() == 0 && !closed) {
+			LockSupport.park(this);
+		}
+		idleConsumers.remove(consumer);
+	}
+
+	private void processRemaining() {
+		List<RewardEvent> batch = new ArrayList<>();
+		while (drain(batch) > 0) {
+			process(batch);
+			batch.clear();
+		}
+	}
+
+	private static CompletableFuture<List<UserReward>> closedFailure() {
+		return CompletableFuture.failedFuture(new IllegalStateException("The reward pipeline is closed"));
+	}
+
+	private int drain(List<RewardEvent> batch) {
+		RewardEvent event;
+		while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+			batch.add(event);
+		}
+		return batch.size();
+	}
+
+	private void process(List<RewardEvent> batch) {
+		// a single calculation covers every location of the user published so far
+		Map<User, List<CompletableFuture<List<UserReward>>>> resultsByUser = new IdentityHashMap<>();
+		for (RewardEvent event : batch) {
+			resultsByUser.computeIfAbsent(event.user(), user -> new ArrayList<>(1)).add(event.result());
+		}
+		resultsByUser.forEach((user, results) -> {
+			CompletableFuture<List<UserReward>> calculation;
+			try {
+				calculation = rewardsService.calculateRewardsAsync(user);
+			} catch (RuntimeException e) {
+				calculation = CompletableFuture.failedFuture(e);
+			}
+			calculation.whenComplete((userRewards, e) -> {
+				if (e != null) {
+					logger.debug("Rewards calculation failed for user " + user.getUserId(), e);
+					results.forEach(result -> result.completeExceptionally(e));
+					return;
+				}
+				// the rewards are reported once, to the first of the user's events
+				results.get(0).complete(userRewards);
+				for (int i = 1; i < results.size(); i++) {
+					results.get(i).complete(List.of());
+				}
+			});
+		});
+	}
+
+	private record RewardEvent(User user, CompletableFuture<List<UserReward>> result) {
+	}
+
+}
@@ -1,16 +1,30 @@
 package com.openclassrooms.tourguide.service;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.cache.CacheProperties;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
 
@@ -23,19 +37,74 @@ import rewardCentral.RewardCentral;
 @Service
 public class RewardsService {
     private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    // users evaluated by one fork/join task of a bulk calculation
+    private static final int REWARDS_SLICE_SIZE = 512;
 	private Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
 	// proximity in miles
     private int defaultProximityBuffer = 10;
 	private int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
-	private final GpsUtil gpsUtil;
-	private final RewardCentral rewardsCentral;
+	private final AttractionCatalog attractionCatalog;
+	private final RewardPointsCache rewardPointsCache;
+	private final ExecutorService executorService;
+	private final TourGuideMetrics metrics;
 	
 	
 	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-		this.gpsUtil = gpsUtil;
-		this.rewardsCentral = rewardCentral;
+		this(gpsUtil, rewardCentral, TrackingExecutors.newExecutor(new ExecutorProperties()));
+	}
+	
+	public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, ExecutorService trackingExecutor) {
+		this(gpsUtil, rewardCentral, trackingExecutor, new TourGuideMetrics());
+	}
+	
+	private RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral, ExecutorService trackingExecutor,
+			TourGuideMetrics metrics) {
+		this(new AttractionCatalog(gpsUtil),
+				new RewardPointsCache(rewardCentral, trackingExecutor, new CacheProperties().getRewardPoints(), metrics),
+				trackingExecutor, metrics);
+	}
+	
+	@Autowired
+	public RewardsService(AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache,
+			ExecutorService trackingExecutor, TourGuideMetrics metrics) {
+		this.attractionCatalog = attractionCatalog;
+		this.rewardPointsCache = rewardPointsCache;
+		this.executorService = trackingExecutor;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * @return The attraction catalog, loaded once from {@link GpsUtil} and shared with {@link TourGuideService}.
+	 */
+	public AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
+	}
+	
+	/**
+	 * @return The spatial index of the current attraction catalog.
+	 */
+	public AttractionIndex getAttractionIndex() {
+		return attractionCatalog.getIndex();
+	}
+	
+	/**
+	 * @return The bounded executor shared by the Tracker, location tracking and reward calculation.
+	 */
+	public ExecutorService getExecutorService() {
+		return executorService;
+	}
+	
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
+	}
+	
+	/**
+	 * @return The meters of the tracking and rewards pipelines, shared with {@link TourGuideService}.
+	 */
+	public TourGuideMetrics getMetrics() {
+		return metrics;
 	}
 	
 	public void setProximityBuffer(int proximityBuffer) {
@@ -47,44 +116,138 @@ public class RewardsService {
 	}
 	
 	/**
-	 * Calculate rewards for a user based on their visited locations and attractions. 
-	 * Rewards are calculated asynchronously using CompletableFuture and ExecutorService.
+	 * Calculate rewards for a user based on their visited locations and attractions, waiting for the result.
 	 *
 	 * @param user The user for whom to calculate rewards.
+	 * @see #calculateRewardsAsync(User)
 	 */
 	public void calculateRewards(User user) {
-	    List<VisitedLocation> userLocations = user.getVisitedLocations();
-	    List<Attraction> attractions = gpsUtil.getAttractions();
-
-	    ExecutorService executorService = Executors.newCachedThreadPool();
-
-	    try {
-	        List<CompletableFuture<Void>> futures = userLocations.stream()
-	                .flatMap(visitedLocation ->
-	                        attractions.stream()
-	                                .filter(attraction -> user.getUserRewards().stream()
-	                                        .noneMatch(r -> r.attraction.attractionName.equals(attraction.attractionName)))
-	                                .filter(attraction -> nearAttraction(visitedLocation, attraction))
-	                                .map(attraction -> CompletableFuture.runAsync(() -> {
-	                                        user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-	                                }, executorService)))
-	                .collect(Collectors.toList());
-
-	        CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-	        allOf.join(); 
+	    calculateRewardsAsync(user).join();
+	}
+
+	/**
+	 * Calculate rewards for a user based on the visited locations added since the previous calculation.
+	 * Each user keeps a watermark of the locations already evaluated, so only the new ones are matched
+	 * against the spatial index, and attractions the user was already rewarded for are skipped in O(1).
+	 * Each attraction not rewarded yet is looked up once, for the first new location near it.
+	 * Reward points missing from the cache are looked up concurrently on the shared tracking executor;
+	 * no thread waits for them. The watermark only moves once every lookup succeeded, so failed
+	 * locations are evaluated again next time. Calculations with new locations are timed until
+	 * their last reward is added.
+	 *
+	 * @param user The user for whom to calculate rewards.
+	 * @return A future of the rewards added to the user, completed once every one of them has been added.
+	 */
+	public CompletableFuture<List<UserReward>> calculateRewardsAsync(User user) {
+	    return calculateRewardsAsync(user, attractionCatalog.getIndex());
+	}
+
+	/**
+	 * Calculate rewards for a batch of users, waiting until every one of them is up to date.
+	 *
+	 * @param users The users for whom to calculate rewards.
+	 * @see #calculateRewardsAsync(Collection)
+	 */
+	public void calculateRewards(Collection<User> users) {
+	    calculateRewardsAsync(users).join();
+	}
+
+	/**
+	 * Calculate rewards for a batch of users in one pass. The attraction index is read once for the
+	 * whole batch, and the batch is split into slices of {@value #REWARDS_SLICE_SIZE} users evaluated
+	 * in parallel on the common fork/join pool, which only matches the new locations against the index.
+	 * The reward points lookups of all the users are then issued together, instead of one user's lookups
+	 * at a time, to the RewardCentral client, whose adaptive limit decides how many are in flight. Once
+	 * its bounded queue is full the sweeping threads run lookups themselves, which throttles the sweep.
+	 * Each user is calculated as by {@link #calculateRewardsAsync(User)}.
+	 * <p>
+	 * The sweep is submitted to the common pool rather than invoked, so the calling thread only waits
+	 * for it if it joins the future, and a caller that is itself a common pool worker does not end up
+	 * running the whole sweep on its own thread.
+	 *
+	 * @param users The users for whom to calculate rewards.
+	 * @return A future completed once every user's rewards have been added; it fails if any user's calculation failed.
+	 */
+	public CompletableFuture<Void> calculateRewardsAsync(Collection<User> users) {
+	    User[] batch = users.toArray(new User[0]);
+	    if (batch.length == 0) {
+	        return CompletableFuture.completedFuture(null);
+	    }
+	    RewardsSweep sweep = new RewardsSweep(batch, 0, batch.length, attractionCatalog.getIndex());
+	    return CompletableFuture.supplyAsync(sweep::invoke, ForkJoinPool.commonPool()).thenCompose(Function.identity());
+	}
 
+	private CompletableFuture<List<UserReward>> calculateRewardsAsync(User user, AttractionIndex attractionIndex) {
+	    long evaluatedLocationCount = user.getEvaluatedLocationCount();
+	    long visitedLocationCount = user.getVisitedLocationCount();
+	    if (evaluatedLocationCount >= visitedLocationCount) {
+	        return CompletableFuture.completedFuture(List.of());
+	    }
+	    // locations that fell out of the user's history retention before being evaluated are skipped
+	    List<VisitedLocation> newLocations = user.getVisitedLocations(evaluatedLocationCount, visitedLocationCount);
+
+	    long start = System.nanoTime();
+	    Map<String, UserReward> newRewards = new LinkedHashMap<>();
+	    for (VisitedLocation visitedLocation : newLocations) {
+	        attractionIndex.forEachWithin(visitedLocation.location.latitude, visitedLocation.location.longitude,
+	                proximityBuffer, (attraction, distance) -> {
+	                    if (!user.hasUserReward(attraction.attractionName)) {
+	                        newRewards.putIfAbsent(attraction.attractionName, new UserReward(visitedLocation, attraction));
+	                    }
+	                });
+	    }
+
+	    Queue<UserReward> addedRewards = new ConcurrentLinkedQueue<>();
+	    CompletableFuture<?>[] futures = newRewards.values().stream()
+	            .map(userReward -> getRewardPointsAsync(userReward.attraction, user)
+	                    .thenAccept(rewardPoints -> {
+	                        userReward.setRewardPoints(rewardPoints);
+	                        if (user.addUserReward(userReward)) {
+	                            addedRewards.add(userReward);
+	                        }
+	                    }))
+	            .toArray(CompletableFuture[]::new);
+
+	    return CompletableFuture.allOf(futures).thenApply(ignored -> {
+	        user.markLocationsEvaluated(visitedLocationCount);
+	        metrics.getRewardCalculationTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 	        logger.debug("Rewards calculation completed for user " + user.getUserId());
+	        return List.copyOf(addedRewards);
+	    });
+	}
+
+	/**
+	 * Evaluates a slice of a batch, splitting it in halves down to slices of REWARDS_SLICE_SIZE users.
+	 */
+	private class RewardsSweep extends RecursiveTask<CompletableFuture<Void>> {
+	    private static final long serialVersionUID = 1L;
 
-	    } finally {
-	        executorService.shutdown();
-	        try {
-	            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-	                executorService.shutdownNow();
+	    private final User[] users;
+	    private final int from;
+	    private final int to;
+	    private final AttractionIndex attractionIndex;
+
+	    RewardsSweep(User[] users, int from, int to, AttractionIndex attractionIndex) {
+	        this.users = users;
+	        this.from = from;
+	        this.to = to;
+	        this.attractionIndex = attractionIndex;
+	    }
+
+	    @Override
+	    protected CompletableFuture<Void> compute() {
+	        if (to - from <= REWARDS_SLICE_SIZE) {
+	            CompletableFuture<?>[] futures = new CompletableFuture<?>[to - from];
+	            for (int i = from; i < to; i++) {
+	                futures[i - from] = calculateRewardsAsync(users[i], attractionIndex);
 	            }
-	        } catch (InterruptedException e) {
-	            executorService.shutdownNow();
-	            Thread.currentThread().interrupt();
+	            return CompletableFuture.allOf(futures);
 	        }
+	        int middle = (from + to) >>> 1;
+	        RewardsSweep left = new RewardsSweep(users, from, middle, attractionIndex);
+	        left.fork();
+	        CompletableFuture<Void> right = new RewardsSweep(users, middle, to, attractionIndex).compute();
+	        return CompletableFuture.allOf(left.join(), right);
 	    }
 	}
 
@@ -92,12 +255,12 @@ public class RewardsService {
 		return getDistance(attraction, location) > attractionProximityRange ? false : true;
 	}
 	
-	private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-		return getDistance(attraction, visitedLocation.location) > proximityBuffer ? false : true;
+	protected int getRewardPoints(Attraction attraction, User user) {
+		return rewardPointsCache.getRewardPoints(attraction.attractionId, user.getUserId());
 	}
 	
-	protected int getRewardPoints(Attraction attraction, User user) {
-		return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+	protected CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, User user) {
+		return rewardPointsCache.getRewardPointsAsync(attraction.attractionId, user.getUserId());
 	}
 	
 	public double getDistance(Location loc1, Location loc2) {
@@ -1,33 +1,46 @@
 package com.openclassrooms.tourguide.service;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.Comparator;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.openclassrooms.tourguide.attraction.NearbyAttraction;
+import com.openclassrooms.tourguide.cache.CacheProperties;
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.cache.TripDealCache;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.location.GpsUtilLocationProvider;
+import com.openclassrooms.tourguide.location.LocationProvider;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.persistence.UserStore;
+import com.openclassrooms.tourguide.pipeline.RewardPipeline;
 import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.LocationRetention;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserRepository;
 import com.openclassrooms.tourguide.user.UserReward;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -35,122 +48,331 @@ import tripPricer.TripPricer;
 
 @Service
 public class TourGuideService {
+	private static final int NEARBY_ATTRACTIONS = 5;
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
-	private final GpsUtil gpsUtil;
+	private final LocationProvider locationProvider;
 	private final RewardsService rewardsService;
-	private final TripPricer tripPricer = new TripPricer();
+	private final TripDealCache tripDealCache;
+	private final TourGuideMetrics metrics;
+	private final LocationRetention locationRetention;
+	private final UserStore userStore;
+	private final RewardPipeline rewardPipeline;
+	private final NearbyAttractionCache nearbyAttractionCache;
+	private final Map<UUID, List<TrackingListener>> trackingListeners = new ConcurrentHashMap<>();
 	public final Tracker tracker;
 	boolean testMode = true;
-    private final ExecutorService executorService;
    
 	public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
-		this.gpsUtil = gpsUtil;
+		this(new GpsUtilLocationProvider(gpsUtil, rewardsService.getExecutorService(), rewardsService.getMetrics()),
+				rewardsService);
+	}
+   
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService) {
+		this(locationProvider, rewardsService, new TripPricer());
+	}
+   
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService, TripPricer tripPricer) {
+		this(locationProvider, rewardsService,
+				new TripDealCache(tripPricer, rewardsService.getExecutorService(),
+						new CacheProperties().getTripDeals(), rewardsService.getMetrics()),
+				LocationRetention.DEFAULT, UserStore.NONE, RewardPipeline.inline(rewardsService),
+				newNearbyAttractionCache(rewardsService, new CacheProperties()));
+	}
+   
+	/**
+	 * Loads the users from the store; internal test users are only generated when the store has none.
+	 */
+	@Autowired
+	public TourGuideService(LocationProvider locationProvider, RewardsService rewardsService,
+			TripDealCache tripDealCache, LocationRetention locationRetention, UserStore userStore,
+			RewardPipeline rewardPipeline, NearbyAttractionCache nearbyAttractionCache) {
+		this.locationProvider = locationProvider;
 		this.rewardsService = rewardsService;
-        this.executorService = Executors.newCachedThreadPool();
+		this.tripDealCache = tripDealCache;
+		this.locationRetention = locationRetention;
+		this.userStore = userStore;
+		this.rewardPipeline = rewardPipeline;
+		this.nearbyAttractionCache = nearbyAttractionCache;
+		this.metrics = rewardsService.getMetrics();
 
 		Locale.setDefault(Locale.US);
 
-		if (testMode) {
+		Map<String, Attraction> attractionsByName = rewardsService.getAttractionIndex().getAttractions().stream()
+				.collect(Collectors.toMap(attraction -> attraction.attractionName, attraction -> attraction,
+						(first, second) -> first));
+		int storedUsers = userStore.open(userRepository, locationRetention, attractionsByName::get);
+		if (storedUsers > 0) {
+			logger.info(storedUsers + " users loaded from the user store");
+		} else if (testMode) {
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
 			initializeInternalUsers();
+			userStore.requestSnapshot();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this);
+		tracker = new Tracker(this, metrics);
 		addShutDownHook();
 	}
 
-	public List<UserReward> getUserRewards(User user) {
-		return user.getUserRewards();
+	/**
+	 * @return A cache of the attractions close to each location cell, over the attraction catalog of the rewards service.
+	 */
+	public static NearbyAttractionCache newNearbyAttractionCache(RewardsService rewardsService,
+			CacheProperties cacheProperties) {
+		return new NearbyAttractionCache(rewardsService.getAttractionCatalog(), NEARBY_ATTRACTIONS,
+				cacheProperties.getNearbyCellDegrees(), cacheProperties.getNearbyAttractions(),
+				rewardsService.getMetrics());
+	}
+
+	public Collection<UserReward> getUserRewards(User user) {
+		return user.getUserRewardView();
 	}
 
 	public VisitedLocation getUserLocation(User user) {
-		VisitedLocation visitedLocation = (user.getVisitedLocations().size() > 0) ? user.getLastVisitedLocation()
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		VisitedLocation visitedLocation = (lastVisitedLocation != null) ? lastVisitedLocation
 				: trackUserLocation(user);
 		return visitedLocation;
 	}
 
+	/**
+	 * Gets the user's last known location without blocking; a user never located yet is tracked first.
+	 *
+	 * @return A future of the user's most recently visited location.
+	 */
+	public CompletableFuture<VisitedLocation> getUserLocationAsync(User user) {
+		VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+		return (lastVisitedLocation != null) ? CompletableFuture.completedFuture(lastVisitedLocation)
+				: trackUserLocationAsync(user);
+	}
+
+	/**
+	 * @return Every location the user visited, archived ones included, oldest first.
+	 */
+	public List<VisitedLocation> getUserLocationHistory(User user) {
+		return user.getVisitedLocationHistory();
+	}
+
 	public User getUser(String userName) {
-		return internalUserMap.get(userName);
+		return userRepository.getByName(userName);
+	}
+
+	public User getUser(UUID userId) {
+		return userRepository.getById(userId);
 	}
 
+	/**
+	 * @return A read-only view of the users, backed by the repository rather than copied.
+	 */
 	public List<User> getAllUsers() {
-		return internalUserMap.values().stream().collect(Collectors.toList());
+		return userRepository.getAllUsers();
 	}
 
 	public void addUser(User user) {
-		if (!internalUserMap.containsKey(user.getUserName())) {
-			internalUserMap.put(user.getUserName(), user);
+		if (userRepository.add(user)) {
+			userStore.userAdded(user);
+			tracker.track(user);
 		}
 	}
 
 	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-		List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-				user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-				user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-		user.setTripDeals(providers);
-		return providers;
+		try {
+			return getTripDealsAsync(user).join();
+		} catch (CompletionException e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
-	 * Tracks user's location and adds it to their visited locations. If the user has visited a new location,
-	 * it calculates the rewards for the user and adds them to the user's rewards.
+	 * Gets the trip deals matching the user's preferences and reward points. Deals priced recently
+	 * for the same inputs come from the cache; otherwise TripPricer is called on the pricing pool,
+	 * not on the calling thread.
+	 *
+	 * @param user The user to price a trip for
+	 * @return A future completed with the deals, also stored as the user's trip deals
+	 */
+	public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+		int cumulatativeRewardPoints = (int) Math.min(user.getRewardPointsTotal(), Integer.MAX_VALUE);
+		UserPreferences preferences = user.getUserPreferences();
+		return tripDealCache.getTripDealsAsync(user.getUserId(), preferences.getNumberOfAdults(),
+				preferences.getNumberOfChildren(), preferences.getTripDuration(), cumulatativeRewardPoints)
+				.thenApply(providers -> {
+					user.setTripDeals(providers);
+					return providers;
+				});
+	}
+
+	/**
+	 * Tracks user's location and waits until it is recorded and the user's rewards are up to date.
 	 *
 	 * @param user The user whose location to track
 	 * @return The user's most recently visited location
+	 * @see #trackUserLocationAsync(User)
 	 */
 	public VisitedLocation trackUserLocation(User user) {
 	    try {
-	        CompletableFuture<VisitedLocation> future = CompletableFuture.supplyAsync(() -> {
-	            VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-	            user.addToVisitedLocations(visitedLocation);
-	            if (visitedLocation != null) {
-	                rewardsService.calculateRewards(user);
-	            }
-	            return visitedLocation;
-	        }, executorService);
-
-	        return future.join();
+	        return trackUserLocationAsync(user).join();
 	    } catch (CompletionException e) {
 	        throw new RuntimeException(e);
 	    }
 	}
+
+	/**
+	 * Tracks user's location and adds it to their visited locations. If the user has visited a new location,
+	 * it calculates the rewards for the user and adds them to the user's rewards.
+	 * The GPS fetch runs on the shared tracking executor and the reward calculation is chained to it,
+	 * so no thread is blocked waiting for either step. When GpsUtil or RewardCentral misses its deadline,
+	 * the user's last known location is returned instead, the missing steps being caught up on the next tracking.
+	 *
+	 * @param user The user whose location to track
+	 * @return A future of the user's most recently visited location, completed once the rewards are calculated
+	 */
+	public CompletableFuture<VisitedLocation> trackUserLocationAsync(User user) {
+	    return locationProvider.getUserLocationAsync(user.getUserId())
+	            .thenCompose(visitedLocation -> recordUserLocation(user, visitedLocation))
+	            .exceptionallyCompose(e -> getLastKnownLocation(user, e));
+	}
+
+	private CompletableFuture<VisitedLocation> getLastKnownLocation(User user, Throwable e) {
+	    Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+	    VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+	    if (!(cause instanceof TimeoutException) || lastVisitedLocation == null) {
+	        return CompletableFuture.failedFuture(e);
+	    }
+	    logger.debug("Tracking of user " + user.getUserId() + " timed out, using the last known location");
+	    return CompletableFuture.completedFuture(lastVisitedLocation);
+	}
+
+	/**
+	 * Tracks the location of many users with a single request to the location provider, then records
+	 * each location and calculates the rewards of each user as in {@link #trackUserLocationAsync(User)}.
+	 * Users that could not be located, or whose rewards failed, are logged and skipped.
+	 *
+	 * @param users The users whose location to track
+	 * @return A future completed once every located user's location and rewards are recorded
+	 */
+	public CompletableFuture<Void> trackUserLocations(Collection<User> users) {
+	    Map<UUID, User> usersById = new HashMap<>(users.size() * 4 / 3 + 1);
+	    users.forEach(user -> usersById.putIfAbsent(user.getUserId(), user));
+
+	    return locationProvider.getUserLocations(usersById.keySet()).thenCompose(visitedLocations -> {
+	        CompletableFuture<?>[] futures = visitedLocations.entrySet().stream()
+	                .map(entry -> recordUserLocation(usersById.get(entry.getKey()), entry.getValue())
+	                        .exceptionally(e -> {
+	                            logger.warn("Tracking failed for user " + entry.getKey(), e);
+	                            return null;
+	                        }))
+	                .toArray(CompletableFuture[]::new);
+	        return CompletableFuture.allOf(futures);
+	    });
+	}
+
+	private CompletableFuture<VisitedLocation> recordUserLocation(User user, VisitedLocation visitedLocation) {
+	    if (visitedLocation == null) {
+	        return CompletableFuture.completedFuture(null);
+	    }
+	    long sequence = user.addToVisitedLocations(visitedLocation);
+	    userStore.locationAdded(user, sequence, visitedLocation);
+	    notifyListeners(user, listener -> listener.locationRecorded(user, visitedLocation));
+	    return rewardPipeline.publish(user).thenApply(newRewards -> {
+	        if (!newRewards.isEmpty()) {
+	            userStore.rewardsAdded(user, newRewards);
+	            notifyListeners(user, listener -> listener.rewardsAdded(user, newRewards));
+	        }
+	        return visitedLocation;
+	    });
+	}
+
+	/**
+	 * Registers a listener notified of every location recorded and every reward added for the user
+	 * by tracking, until the returned handle is run.
+	 *
+	 * @param user The user to follow.
+	 * @param listener The listener to notify.
+	 * @return Removes the listener; running it more than once has no further effect.
+	 */
+	public Runnable addTrackingListener(User user, TrackingListener listener) {
+	    UUID userId = user.getUserId();
+	    trackingListeners.compute(userId, (id, listeners) -> {
+	        List<TrackingListener> updated = (listeners != null) ? listeners : new CopyOnWriteArrayList<>();
+	        updated.add(listener);
+	        return updated;
+	    });
+	    return () -> trackingListeners.computeIfPresent(userId, (id, listeners) -> {
+	        listeners.remove(listener);
+	        return listeners.isEmpty() ? null : listeners;
+	    });
+	}
+
+	private void notifyListeners(User user, Consumer<TrackingListener> notification) {
+	    if (trackingListeners.isEmpty()) {
+	        return;
+	    }
+	    List<TrackingListener> listeners = trackingListeners.get(user.getUserId());
+	    if (listeners == null) {
+	        return;
+	    }
+	    for (TrackingListener listener : listeners) {
+	        try {
+	            notification.accept(listener);
+	        } catch (RuntimeException e) {
+	            logger.warn("Tracking listener failed for user " + user.getUserId(), e);
+	        }
+	    }
+	}
 	
 	/**
      * Gets the closest five tourist attractions to the user - no matter how far away they are.
      *
      * @param user The user for whom to find nearby attractions.
-     * @return A list of maps representing nearby attractions with information such as name,
-     * latitude, longitude, distance from the user, and reward points.
+     * @return The nearby attractions, from nearest to farthest, with their distance from the user
+     * and the reward points the user would get for them.
+     */
+    public List<NearbyAttraction> getNearByAttractions(User user) {
+        try {
+            return getNearByAttractionsAsync(user).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Gets the closest five tourist attractions to the user without blocking. The candidates come from
+     * the cache of the user's location cell and the reward points from the reward points cache; the
+     * user's location and the points not cached yet are fetched concurrently.
+     *
+     * @param user The user for whom to find nearby attractions.
+     * @return A future of the nearby attractions, as described in {@link #getNearByAttractions(User)}.
      */
-    public List<Map<String, Object>> getNearByAttractions(User user) {
+    public CompletableFuture<List<NearbyAttraction>> getNearByAttractionsAsync(User user) {
         logger.debug("Getting nearby attractions for user: {}", user.getUserName());
 
-        // Get the current location of the user
-        VisitedLocation visitedLocation = getUserLocation(user);
-
-        // Use parallelStream to parallelize attraction distance calculations
-        List<Map<String, Object>> closestAttractions = gpsUtil.getAttractions().parallelStream()
-                .sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, visitedLocation.location)))
-                .limit(5)
-                .map(attraction -> {
-                    // Create a map to represent an attraction with specific information
-                    Map<String, Object> attractionMap = new ConcurrentHashMap<>();
-                    attractionMap.put("name", attraction.attractionName);
-                    attractionMap.put("attractionLatitude", attraction.latitude);
-                    attractionMap.put("attractionLongitude", attraction.longitude);
-                    attractionMap.put("userLatitude", visitedLocation.location.latitude);
-                    attractionMap.put("userLongitude", visitedLocation.location.longitude);
-                    attractionMap.put("distance", rewardsService.getDistance(attraction, visitedLocation.location));
-                    attractionMap.put("rewardPoints", rewardsService.getRewardPoints(attraction, user));
-                    return attractionMap;
-                })
-                .collect(Collectors.toList());
-
-        logger.debug("Found {} nearby attractions for user: {}", closestAttractions.size(), user.getUserName());
-
-        return closestAttractions;
+        return getUserLocationAsync(user).thenCompose(visitedLocation -> {
+            Location location = visitedLocation.location;
+            List<Attraction> attractions = new ArrayList<>(NEARBY_ATTRACTIONS);
+            double[] distances = new double[NEARBY_ATTRACTIONS];
+            nearbyAttractionCache.forEachNearest(location.latitude, location.longitude, (attraction, distance) -> {
+                distances[attractions.size()] = distance;
+                attractions.add(attraction);
+            });
+            List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>(attractions.size());
+            for (Attraction attraction : attractions) {
+                rewardPoints.add(rewardsService.getRewardPointsAsync(attraction, user));
+            }
+
+            return CompletableFuture.allOf(rewardPoints.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+                List<NearbyAttraction> closestAttractions = new ArrayList<>(rewardPoints.size());
+                for (int i = 0; i < rewardPoints.size(); i++) {
+                    Attraction attraction = attractions.get(i);
+                    closestAttractions.add(new NearbyAttraction(attraction.attractionName, attraction.latitude,
+                            attraction.longitude, location.latitude, location.longitude, distances[i],
+                            rewardPoints.get(i).join()));
+                }
+                logger.debug("Found {} nearby attractions for user: {}", closestAttractions.size(),
+                        user.getUserName());
+                return Collections.unmodifiableList(closestAttractions);
+            });
+        });
     }
 
 
@@ -167,46 +389,14 @@ public class TourGuideService {
 	 * Methods Below: For Internal Testing
 	 * 
 	 **********************************************************************************/
-	private static final String tripPricerApiKey = "test-server-api-key";
 	// Database connection will be used for external users, but for testing purposes
 	// internal users are provided and stored in memory
-	private final Map<String, User> internalUserMap = new HashMap<>();
+	private final UserRepository userRepository = new UserRepository(InternalTestHelper.getInternalUserNumber());
 
 	private void initializeInternalUsers() {
-		IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-			String userName = "internalUser" + i;
-			String phone = "000";
-			String email = userName + "@tourGuide.com";
-			User user = new User(UUID.randomUUID(), userName, phone, email);
-			generateUserLocationHistory(user);
-
-			internalUserMap.put(userName, user);
-		});
+		new InternalUserGenerator(locationRetention).generate(InternalTestHelper.getInternalUserNumber())
+				.forEach(userRepository::add);
 		logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
 	}
 
-	private void generateUserLocationHistory(User user) {
-		IntStream.range(0, 3).forEach(i -> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-					new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-		});
-	}
-
-	private double generateRandomLongitude() {
-		double leftLimit = -180;
-		double rightLimit = 180;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-	}
-
-	private double generateRandomLatitude() {
-		double leftLimit = -85.05112878;
-		double rightLimit = 85.05112878;
-		return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-	}
-
-	private Date getRandomTime() {
-		LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-		return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
-	}
-
 }
\ No newline at end of file
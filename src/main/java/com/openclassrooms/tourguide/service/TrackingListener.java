@@ -0,0 +1,30 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.List;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Notified of what tracking records for one user; see {@link TourGuideService#addTrackingListener}.
+ * <p>
+ * Callbacks run on the thread that recorded the location or added the rewards, usually one of the
+ * tracking executor's, so they must return quickly and not block.
+ */
+public interface TrackingListener {
+
+	/**
+	 * @param user The user who was located.
+	 * @param visitedLocation The location just added to the user's history.
+	 */
+	void locationRecorded(User user, VisitedLocation visitedLocation);
+
+	/**
+	 * @param user The user who was rewarded.
+	 * @param userRewards The rewards just added to the user, never empty.
+	 */
+	void rewardsAdded(User user, List<UserReward> userRewards);
+
+}
@@ -1,74 +1,212 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 
+/**
+ * Tracks every user once per polling interval on a rolling schedule.
+ * <p>
+ * Each user has its own due time, the initial ones being spread evenly over the interval,
+ * so the load on GpsUtil and RewardCentral stays smooth instead of coming in one burst per
+ * cycle. Users due within the same batch window are grouped into one batch request, and at
+ * most {@link #MAX_USERS_IN_FLIGHT} users are being tracked at any time. A user is due again
+ * one interval after its previous due time; the delay between the due time and the actual
+ * tracking is reported as lag. Batch durations and sizes, the users in flight and the lag are
+ * also published as {@code tourguide.tracker.*} meters.
+ */
 public class Tracker extends Thread {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
 	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-	private final ExecutorService executorService = Executors.newCachedThreadPool(); 
+	// users due within this window are tracked by the same batch request
+	private static final long BATCH_WINDOW_MILLIS = 1000;
+	private static final int BATCH_SIZE = 10_000;
+	private static final int MAX_USERS_IN_FLIGHT = 10_000;
 	private final TourGuideService tourGuideService;
-	private boolean stop = false;
-    private static final int BATCH_SIZE = 1000; 
+	private final TourGuideMetrics metrics;
+	private final LongSupplier ticker;
+	private final long intervalNanos = TimeUnit.SECONDS.toNanos(trackingPollingInterval);
+	private final DelayQueue<ScheduledUser> schedule = new DelayQueue<>();
+	private final Semaphore inFlight = new Semaphore(MAX_USERS_IN_FLIGHT);
+	private final LongAdder trackedUsers = new LongAdder();
+	private final AtomicLong maxLagNanos = new AtomicLong();
+	private volatile long lastReportedLagMillis;
+	private volatile boolean stop = false;
 
 
-	public Tracker(TourGuideService tourGuideService) {
+	/**
+	 * Starts tracking every user of the service on its own daemon thread.
+	 *
+	 * @param tourGuideService The service whose users are tracked.
+	 * @param metrics The meters the Tracker reports to.
+	 */
+	public Tracker(TourGuideService tourGuideService, TourGuideMetrics metrics) {
+		this(tourGuideService, metrics, System::nanoTime);
+	}
+
+	/**
+	 * Starts tracking every user of the service on its own daemon thread.
+	 *
+	 * @param tourGuideService The service whose users are tracked.
+	 * @param metrics The meters the Tracker reports to.
+	 * @param ticker The time source in nanoseconds the users are scheduled with.
+	 */
+	public Tracker(TourGuideService tourGuideService, TourGuideMetrics metrics, LongSupplier ticker) {
+		super("Tracker");
 		this.tourGuideService = tourGuideService;
+		this.metrics = metrics;
+		this.ticker = ticker;
+		metrics.gauge("tourguide.tracker.users.in-flight", "Users whose tracking has started but not completed yet",
+				this, Tracker::getUsersInFlight);
+		metrics.gauge("tourguide.tracker.lag", "Worst delay in ms between a user's due time and its tracking",
+				this, Tracker::getCurrentLagMillis);
+
+		List<User> users = tourGuideService.getAllUsers();
+		long now = ticker.getAsLong();
+		for (int i = 0; i < users.size(); i++) {
+			schedule.add(new ScheduledUser(users.get(i), now + (long) ((double) intervalNanos * i / users.size())));
+		}
 
-		executorService.submit(this);
+		setDaemon(true);
+		start();
 	}
 
 	/**
-	 * Assures to shut down the Tracker thread
+	 * Adds a user to the schedule, due right away.
+	 *
+	 * @param user The user to track from now on.
+	 */
+	public void track(User user) {
+		schedule.add(new ScheduledUser(user, ticker.getAsLong()));
+	}
+
+	/**
+	 * Assures to shut down the Tracker thread. The shared executor is left running for its other users.
 	 */
 	public void stopTracking() {
 		stop = true;
-		executorService.shutdownNow();
+		interrupt();
+	}
+
+	/**
+	 * @return The number of users whose tracking has started but not completed yet.
+	 */
+	public int getUsersInFlight() {
+		return MAX_USERS_IN_FLIGHT - inFlight.availablePermits();
+	}
+
+	/**
+	 * @return The worst delay between a user's due time and its tracking over the last reporting period.
+	 */
+	public long getLagMillis() {
+		return lastReportedLagMillis;
 	}
 
-	 @Override
-	    public void run() {
-	        StopWatch stopWatch = new StopWatch();
-	        while (true) {
-	            if (Thread.currentThread().isInterrupted() || stop) {
-	                logger.debug("Tracker stopping");
-	                break;
-	            }
-
-	            List<User> users = tourGuideService.getAllUsers();
-	            logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-	            stopWatch.start();
-
-	            for (int i = 0; i < users.size(); i += BATCH_SIZE) {
-	                List<User> batchUsers = users.subList(i, Math.min(i + BATCH_SIZE, users.size()));
-	                List<CompletableFuture<Void>> futures = batchUsers.stream()
-	                        .map(u -> CompletableFuture.runAsync(() -> tourGuideService.trackUserLocation(u), executorService))
-	                        .collect(Collectors.toList());
-
-	                CompletableFuture<Void> allOf = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
-	                allOf.join();
-	            }
-
-	            stopWatch.stop();
-	            logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-	            stopWatch.reset();
-	            try {
-	                logger.debug("Tracker sleeping");
-	                TimeUnit.SECONDS.sleep(trackingPollingInterval);
-	            } catch (InterruptedException e) {
-	                break;
-	            }
-	        }
-	    }
-}
\ No newline at end of file
+	private double getCurrentLagMillis() {
+		return Math.max(lastReportedLagMillis, TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+	}
+
+	@Override
+	public void run() {
+		long nextReport = ticker.getAsLong() + intervalNanos;
+		while (!stop) {
+			List<ScheduledUser> batch = new ArrayList<>();
+			try {
+				batch.add(schedule.take());
+				schedule.drainTo(batch, BATCH_SIZE - 1);
+				inFlight.acquire(batch.size());
+			} catch (InterruptedException e) {
+				break;
+			}
+
+			long now = ticker.getAsLong();
+			List<User> users = new ArrayList<>(batch.size());
+			for (ScheduledUser scheduledUser : batch) {
+				users.add(scheduledUser.user);
+				maxLagNanos.accumulateAndGet(now - scheduledUser.dueNanos, Math::max);
+			}
+			dispatch(batch, users);
+
+			if (now - nextReport >= 0) {
+				report();
+				nextReport = now + intervalNanos;
+			}
+		}
+		logger.debug("Tracker stopping");
+	}
+
+	private void dispatch(List<ScheduledUser> batch, List<User> users) {
+		metrics.getTrackerBatchSize().record(users.size());
+		long start = System.nanoTime();
+		try {
+			tourGuideService.trackUserLocations(users).whenComplete((ignored, e) -> {
+				metrics.getTrackerBatchTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				if (e != null) {
+					logger.warn("Tracking failed for a batch of " + users.size() + " users", e);
+				}
+				reschedule(batch);
+			});
+		} catch (RuntimeException e) {
+			logger.warn("Tracking could not be started for a batch of " + users.size() + " users", e);
+			reschedule(batch);
+		}
+	}
+
+	private void reschedule(List<ScheduledUser> batch) {
+		inFlight.release(batch.size());
+		trackedUsers.add(batch.size());
+		long now = ticker.getAsLong();
+		// a user behind schedule is due right away, but its missed slots are not replayed
+		batch.forEach(scheduledUser -> schedule.add(new ScheduledUser(scheduledUser.user,
+				Math.max(scheduledUser.dueNanos + intervalNanos, now))));
+	}
+
+	private void report() {
+		lastReportedLagMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, maxLagNanos.getAndSet(0)));
+		long tracked = trackedUsers.sumThenReset();
+		if (lastReportedLagMillis > TimeUnit.NANOSECONDS.toMillis(intervalNanos / 10)) {
+			logger.warn("Tracker is behind schedule: " + tracked + " users tracked, lag up to "
+					+ lastReportedLagMillis + " ms, " + getUsersInFlight() + " in flight.");
+		} else {
+			logger.debug("Tracker: " + tracked + " users tracked, lag up to " + lastReportedLagMillis + " ms, "
+					+ getUsersInFlight() + " in flight.");
+		}
+	}
+
+	/**
+	 * A user waiting in the schedule; it is handed out once its due time is within the batch window.
+	 */
+	private class ScheduledUser implements Delayed {
+		private final User user;
+		private final long dueNanos;
+
+		ScheduledUser(User user, long dueNanos) {
+			this.user = user;
+			this.dueNanos = dueNanos;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			long delay = dueNanos - TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MILLIS) - ticker.getAsLong();
+			return unit.convert(delay, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			return Long.compare(dueNanos, ((ScheduledUser) other).dueNanos);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide.user;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Retention of the in-memory location history, bound from the {@code tourguide.history.*} properties.
+ */
+@ConfigurationProperties(prefix = "tourguide.history")
+public class HistoryProperties {
+
+	private int maxLocations = LocationRetention.DEFAULT.maxLocations();
+	private Duration maxAge = LocationRetention.DEFAULT.maxAge();
+
+	public int getMaxLocations() {
+		return maxLocations;
+	}
+
+	public void setMaxLocations(int maxLocations) {
+		this.maxLocations = maxLocations;
+	}
+
+	public Duration getMaxAge() {
+		return maxAge;
+	}
+
+	public void setMaxAge(Duration maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	public LocationRetention toRetention(LocationArchive archive) {
+		return new LocationRetention(maxLocations, maxAge, archive);
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.UUID;
+
+/**
+ * Where visited locations go once they fall out of a user's in-memory retention.
+ */
+public interface LocationArchive {
+
+	/** Discards the locations, which is what happens when no archive is configured. */
+	LocationArchive NONE = new LocationArchive() {
+		@Override
+		public void archive(UUID userId, long sequence, double latitude, double longitude, long timeMillis) {
+		}
+
+		@Override
+		public void forEach(UUID userId, long beforeSequence, Visitor visitor) {
+		}
+	};
+
+	/**
+	 * Stores a location leaving the user's in-memory history. Locations of a user are archived in sequence order.
+	 */
+	void archive(UUID userId, long sequence, double latitude, double longitude, long timeMillis);
+
+	/**
+	 * Visits the archived locations of a user, most recent first.
+	 *
+	 * @param userId The user whose locations to visit.
+	 * @param beforeSequence Only the locations with a lower sequence number are visited.
+	 * @param visitor Called for each location.
+	 */
+	void forEach(UUID userId, long beforeSequence, Visitor visitor);
+
+	@FunctionalInterface
+	interface Visitor {
+		void visit(long sequence, double latitude, double longitude, long timeMillis);
+	}
+
+}
@@ -0,0 +1,318 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.StampedLock;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * The visited locations of one user, kept as primitive columns in a ring buffer.
+ * <p>
+ * Each location costs 24 bytes (latitude, longitude and epoch millis) instead of the four objects
+ * of a {@link VisitedLocation}. Appends are O(1): the buffer grows by doubling up to the retention
+ * count, then the oldest location is overwritten. Locations older than the retention age are dropped
+ * on append; dropped locations are handed to the retention's {@link LocationArchive} once the lock is
+ * released, so a slow archive does not hold up the readers and writers of the history. Every location
+ * gets a sequence number, counting from 0 and never reused, so callers can ask for the locations
+ * added since a given point even after older ones were dropped.
+ * <p>
+ * Reads do not lock: they copy the columns under an optimistic {@link StampedLock} stamp and only
+ * fall back to the read lock if an append raced with them. The latest location is kept as is in a
+ * volatile field.
+ */
+public class LocationHistory {
+	private static final int INITIAL_CAPACITY = 4;
+	private static final Buffer EMPTY = new Buffer(0);
+
+	private final UUID userId;
+	private final int maxLocations;
+	private final long maxAgeMillis;
+	private final LocationArchive archive;
+	private final StampedLock lock = new StampedLock();
+	// guarded by lock for writes, read optimistically
+	private Buffer buffer = EMPTY;
+	private long first;
+	private long next;
+	private volatile VisitedLocation latest;
+	// dropped under the write lock in sequence order, archived in that order while synchronized on it
+	private final Queue<Dropped> dropped = new ConcurrentLinkedQueue<>();
+
+	public LocationHistory(UUID userId, LocationRetention retention) {
+		this.userId = userId;
+		this.maxLocations = retention.maxLocations();
+		this.maxAgeMillis = retention.maxAge().toMillis();
+		this.archive = retention.archive();
+	}
+
+	/**
+	 * @return The sequence number of the added location.
+	 */
+	public long add(VisitedLocation visitedLocation) {
+		long sequence;
+		long stamp = lock.writeLock();
+		try {
+			sequence = append(visitedLocation);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		if (!dropped.isEmpty()) {
+			archiveDropped();
+		}
+		return sequence;
+	}
+
+	/**
+	 * Adds a location under the sequence number it had before, e.g. when reloading a stored history.
+	 * Locations must be restored in sequence order; one already present is ignored, and a gap in the
+	 * sequence numbers drops the retained locations preceding it, without archiving them again.
+	 *
+	 * @return false if the location was already present.
+	 */
+	public boolean restore(long sequence, VisitedLocation visitedLocation) {
+		long stamp = lock.writeLock();
+		try {
+			if (sequence < next) {
+				return false;
+			}
+			if (sequence > next) {
+				first = sequence;
+				next = sequence;
+			}
+			append(visitedLocation);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+		if (!dropped.isEmpty()) {
+			archiveDropped();
+		}
+		return true;
+	}
+
+	// must hold the write lock
+	private long append(VisitedLocation visitedLocation) {
+		if (next - first == buffer.capacity()) {
+			if (buffer.capacity() < maxLocations) {
+				buffer = grow();
+			} else {
+				drop();
+			}
+		}
+		buffer.set(next, visitedLocation);
+		next++;
+		if (maxAgeMillis > 0) {
+			long cutoff = System.currentTimeMillis() - maxAgeMillis;
+			while (first < next && buffer.times[buffer.index(first)] < cutoff) {
+				drop();
+			}
+		}
+		latest = visitedLocation;
+		return next - 1;
+	}
+
+	/**
+	 * @return The most recently added location, or null if there is none; it is kept even once out of retention.
+	 */
+	public VisitedLocation getLatest() {
+		return latest;
+	}
+
+	/**
+	 * @return The sequence number the next location will get, i.e. the number of locations ever added.
+	 */
+	public long getCount() {
+		long stamp = lock.tryOptimisticRead();
+		long count = next;
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				count = next;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @param from The sequence number of the first location wanted.
+	 * @param to The sequence number after the last location wanted.
+	 * @return A snapshot of the retained locations in the range, oldest first.
+	 */
+	public List<VisitedLocation> getLocations(long from, long to) {
+		long stamp = lock.tryOptimisticRead();
+		List<VisitedLocation> locations = copy(from, to);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				locations = copy(from, to);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return locations;
+	}
+
+	/**
+	 * Visits a snapshot of the retained locations, oldest first, with their sequence numbers.
+	 */
+	public void forEachRetained(LocationArchive.Visitor visitor) {
+		Snapshot retained = (Snapshot) getLocations(0, Long.MAX_VALUE);
+		for (int i = 0; i < retained.size(); i++) {
+			visitor.visit(retained.start + i, retained.latitudes[i], retained.longitudes[i], retained.times[i]);
+		}
+	}
+
+	/**
+	 * @return The archived locations followed by the retained ones, oldest first.
+	 */
+	public List<VisitedLocation> getAllLocations() {
+		Snapshot retained = (Snapshot) getLocations(0, Long.MAX_VALUE);
+		// the locations dropped before the snapshot may still be on their way to the archive
+		archiveDropped();
+		List<VisitedLocation> locations = new ArrayList<>();
+		archive.forEach(userId, retained.start, (sequence, latitude, longitude, timeMillis) -> locations
+				.add(new VisitedLocation(userId, new Location(latitude, longitude), new Date(timeMillis))));
+		Collections.reverse(locations);
+		locations.addAll(retained);
+		return locations;
+	}
+
+	/**
+	 * Forgets the retained locations and restarts the sequence numbers; archived locations are left as they are.
+	 */
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			buffer = EMPTY;
+			first = 0;
+			next = 0;
+			latest = null;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// must hold the write lock
+	private void drop() {
+		if (archive != LocationArchive.NONE) {
+			int index = buffer.index(first);
+			dropped.add(new Dropped(first, buffer.latitudes[index], buffer.longitudes[index], buffer.times[index]));
+		}
+		first++;
+	}
+
+	// must not hold the lock; returns once every location dropped so far is archived, by this thread or another
+	private void archiveDropped() {
+		synchronized (dropped) {
+			Dropped location;
+			while ((location = dropped.poll()) != null) {
+				archive.archive(userId, location.sequence(), location.latitude(), location.longitude(),
+						location.timeMillis());
+			}
+		}
+	}
+
+	private Buffer grow() {
+		Buffer grown = new Buffer(Math.min(Math.max(buffer.capacity() * 2, INITIAL_CAPACITY), maxLocations));
+		for (long sequence = first; sequence < next; sequence++) {
+			grown.copy(sequence, buffer);
+		}
+		return grown;
+	}
+
+	private List<VisitedLocation> copy(long from, long to) {
+		Buffer buffer = this.buffer;
+		long start = Math.max(from, first);
+		long end = Math.min(to, next);
+		// an optimistic read may see inconsistent fields, the stamp validation discards the result then
+		int size = (int) Math.min(Math.max(0, end - start), buffer.capacity());
+		start = Math.min(start, end);
+		double[] latitudes = new double[size];
+		double[] longitudes = new double[size];
+		long[] times = new long[size];
+		for (int i = 0; i < size; i++) {
+			int index = buffer.index(start + i);
+			latitudes[i] = buffer.latitudes[index];
+			longitudes[i] = buffer.longitudes[index];
+			times[i] = buffer.times[index];
+		}
+		return new Snapshot(userId, start, latitudes, longitudes, times);
+	}
+
+	private record Dropped(long sequence, double latitude, double longitude, long timeMillis) {
+	}
+
+	private static class Buffer {
+		private final double[] latitudes;
+		private final double[] longitudes;
+		private final long[] times;
+
+		Buffer(int capacity) {
+			latitudes = new double[capacity];
+			longitudes = new double[capacity];
+			times = new long[capacity];
+		}
+
+		int capacity() {
+			return times.length;
+		}
+
+		int index(long sequence) {
+			return (int) (sequence % times.length);
+		}
+
+		void set(long sequence, VisitedLocation visitedLocation) {
+			int index = index(sequence);
+			latitudes[index] = visitedLocation.location.latitude;
+			longitudes[index] = visitedLocation.location.longitude;
+			times[index] = visitedLocation.timeVisited.getTime();
+		}
+
+		void copy(long sequence, Buffer from) {
+			int index = index(sequence);
+			int fromIndex = from.index(sequence);
+			latitudes[index] = from.latitudes[fromIndex];
+			longitudes[index] = from.longitudes[fromIndex];
+			times[index] = from.times[fromIndex];
+		}
+	}
+
+	/**
+	 * Read-only list over copied columns; the {@link VisitedLocation}s are only created when accessed.
+	 */
+	private static class Snapshot extends AbstractList<VisitedLocation> implements RandomAccess {
+		private final UUID userId;
+		private final long start;
+		private final double[] latitudes;
+		private final double[] longitudes;
+		private final long[] times;
+
+		Snapshot(UUID userId, long start, double[] latitudes, double[] longitudes, long[] times) {
+			this.userId = userId;
+			this.start = start;
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.times = times;
+		}
+
+		@Override
+		public VisitedLocation get(int index) {
+			return new VisitedLocation(userId, new Location(latitudes[index], longitudes[index]), new Date(times[index]));
+		}
+
+		@Override
+		public int size() {
+			return times.length;
+		}
+	}
+
+}
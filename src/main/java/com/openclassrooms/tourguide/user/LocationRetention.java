@@ -0,0 +1,36 @@
+package com.openclassrooms.tourguide.user;
+
+import java.time.Duration;
+
+/**
+ * How much of a user's visited-location history is kept in memory.
+ *
+ * @param maxLocations The number of most recent locations kept.
+ * @param maxAge The age past which locations are dropped, or {@link Duration#ZERO} to keep them regardless of age.
+ * @param archive Where the dropped locations go.
+ */
+public record LocationRetention(int maxLocations, Duration maxAge, LocationArchive archive) {
+
+	/** One day of tracking at the Tracker's 5 minute interval, without age limit. */
+	public static final LocationRetention DEFAULT = new LocationRetention(288, Duration.ZERO);
+
+	public LocationRetention {
+		if (maxLocations < 1) {
+			throw new IllegalArgumentException("maxLocations must be positive: " + maxLocations);
+		}
+		if (maxAge.isNegative()) {
+			throw new IllegalArgumentException("maxAge must not be negative: " + maxAge);
+		}
+		if (archive == null) {
+			archive = LocationArchive.NONE;
+		}
+	}
+
+	/**
+	 * A retention discarding the dropped locations.
+	 */
+	public LocationRetention(int maxLocations, Duration maxAge) {
+		this(maxLocations, maxAge, LocationArchive.NONE);
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.tourguide.user;
+
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Compact projection of a {@link VisitedLocation}, without the user id the caller already knows.
+ *
+ * @param latitude The latitude, in degrees.
+ * @param longitude The longitude, in degrees.
+ * @param timeVisited When the location was visited, in milliseconds since the epoch.
+ */
+public record LocationSummary(double latitude, double longitude, long timeVisited) {
+
+	public static LocationSummary of(VisitedLocation visitedLocation) {
+		return new LocationSummary(visitedLocation.location.latitude, visitedLocation.location.longitude,
+				visitedLocation.timeVisited.getTime());
+	}
+
+}
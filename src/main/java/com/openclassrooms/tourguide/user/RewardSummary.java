@@ -0,0 +1,22 @@
+package com.openclassrooms.tourguide.user;
+
+/**
+ * Compact projection of a {@link UserReward}: the attraction by name only, and where and when the
+ * user was when rewarded.
+ *
+ * @param attractionName The name of the attraction the user was rewarded for.
+ * @param rewardPoints The points granted.
+ * @param latitude The latitude of the rewarded visit, in degrees.
+ * @param longitude The longitude of the rewarded visit, in degrees.
+ * @param timeVisited When the rewarded visit took place, in milliseconds since the epoch.
+ */
+public record RewardSummary(String attractionName, int rewardPoints, double latitude, double longitude,
+		long timeVisited) {
+
+	public static RewardSummary of(UserReward userReward) {
+		return new RewardSummary(userReward.attraction.attractionName, userReward.getRewardPoints(),
+				userReward.visitedLocation.location.latitude, userReward.visitedLocation.location.longitude,
+				userReward.visitedLocation.timeVisited.getTime());
+	}
+
+}
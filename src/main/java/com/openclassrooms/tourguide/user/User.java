@@ -1,12 +1,15 @@
 package com.openclassrooms.tourguide.user;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
@@ -17,16 +20,28 @@ public class User {
 	private String phoneNumber;
 	private String emailAddress;
 	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new CopyOnWriteArrayList<>();
-	private Map<String, UserReward> userRewards = new ConcurrentHashMap<>();
+	private final LocationHistory visitedLocations;
+	// sequence number of the first visited location not evaluated for rewards yet
+	private final AtomicLong evaluatedLocationCount = new AtomicLong();
+	private final Map<String, UserReward> userRewards = new ConcurrentHashMap<>();
+	private final Collection<UserReward> userRewardView = Collections.unmodifiableCollection(userRewards.values());
+	// maintained as rewards are added, so they are read without walking the rewards
+	private final AtomicLong rewardPoints = new AtomicLong();
+	private final AtomicInteger rewardCount = new AtomicInteger();
 	private UserPreferences userPreferences = new UserPreferences();
 	private List<Provider> tripDeals = new ArrayList<>();
 	
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, LocationRetention.DEFAULT);
+	}
+	
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress,
+			LocationRetention locationRetention) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new LocationHistory(userId, locationRetention);
 	}
 	
 	public UUID getUserId() {
@@ -61,26 +76,130 @@ public class User {
 		return latestLocationTimestamp;
 	}
 	
-	public void addToVisitedLocations(VisitedLocation visitedLocation) {
-		visitedLocations.add(visitedLocation);
+	/**
+	 * @return The sequence number of the visited location.
+	 */
+	public long addToVisitedLocations(VisitedLocation visitedLocation) {
+		return visitedLocations.add(visitedLocation);
+	}
+	
+	/**
+	 * Adds a visited location under the sequence number it had before; see {@link LocationHistory#restore}.
+	 *
+	 * @return false if the location was already present.
+	 */
+	public boolean restoreVisitedLocation(long sequence, VisitedLocation visitedLocation) {
+		return visitedLocations.restore(sequence, visitedLocation);
+	}
+	
+	/**
+	 * Visits the retained visited locations, oldest first, with their sequence numbers.
+	 */
+	public void forEachVisitedLocation(LocationArchive.Visitor visitor) {
+		visitedLocations.forEachRetained(visitor);
 	}
 	
+	/**
+	 * @return A read-only snapshot of the retained visited locations, oldest first.
+	 */
 	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+		return visitedLocations.getLocations(0, Long.MAX_VALUE);
 	}
 	
-	public void clearVisitedLocations() {
-		visitedLocations.clear();
+	/**
+	 * @return The number of locations ever visited, including the ones out of retention;
+	 * it is also the sequence number of the next visited location.
+	 */
+	public long getVisitedLocationCount() {
+		return visitedLocations.getCount();
+	}
+	
+	/**
+	 * @param from The sequence number of the first visited location wanted.
+	 * @param to The sequence number after the last visited location wanted.
+	 * @return A snapshot of the retained visited locations in the range, oldest first.
+	 */
+	public List<VisitedLocation> getVisitedLocations(long from, long to) {
+		return visitedLocations.getLocations(from, to);
+	}
+	
+	/**
+	 * @param from The sequence number of the first visited location wanted.
+	 * @return A snapshot of the retained visited locations from that one on.
+	 */
+	public List<VisitedLocation> getVisitedLocationsSince(long from) {
+		return visitedLocations.getLocations(from, Long.MAX_VALUE);
 	}
 	
-	public void addUserReward(UserReward userReward) {
-        userRewards.putIfAbsent(userReward.attraction.attractionName, userReward);
+	/**
+	 * @return Every location the user visited, including the archived ones, oldest first.
+	 */
+	public List<VisitedLocation> getVisitedLocationHistory() {
+		return visitedLocations.getAllLocations();
+	}
+	
+	public void clearVisitedLocations() {
+		visitedLocations.clear();
+		evaluatedLocationCount.set(0);
+	}
+	
+	/**
+	 * @return The sequence number of the first visited location not evaluated for rewards yet.
+	 */
+	public long getEvaluatedLocationCount() {
+		return evaluatedLocationCount.get();
+	}
+	
+	/**
+	 * Moves the rewards watermark forward; it never goes back, so concurrent evaluations may finish in any order.
+	 *
+	 * @param count The sequence number of the first visited location not evaluated for rewards yet.
+	 */
+	public void markLocationsEvaluated(long count) {
+		evaluatedLocationCount.accumulateAndGet(count, Math::max);
+	}
+	
+	/**
+	 * @return false if the user already had a reward for this attraction.
+	 */
+	public boolean addUserReward(UserReward userReward) {
+        if (userRewards.putIfAbsent(userReward.attraction.attractionName, userReward) != null) {
+        	return false;
+        }
+        rewardPoints.addAndGet(userReward.getRewardPoints());
+        rewardCount.incrementAndGet();
+        return true;
     }
 	
+	/**
+	 * @return A copy of the rewards.
+	 */
 	public List<UserReward> getUserRewards() {
         return new ArrayList<>(userRewards.values());
     }
 	
+	/**
+	 * @return A read-only live view of the rewards: it is not copied and reflects the rewards added later.
+	 */
+	public Collection<UserReward> getUserRewardView() {
+		return userRewardView;
+	}
+	
+	/**
+	 * @return The sum of the points of the rewards, as they were when each reward was added.
+	 */
+	public long getRewardPointsTotal() {
+		return rewardPoints.get();
+	}
+	
+	public int getUserRewardCount() {
+		return rewardCount.get();
+	}
+	
+	public boolean hasUserReward(String attractionName) {
+		return userRewards.containsKey(attractionName);
+	}
+	
 	public UserPreferences getUserPreferences() {
 		return userPreferences;
 	}
@@ -89,8 +208,11 @@ public class User {
 		this.userPreferences = userPreferences;
 	}
 
+	/**
+	 * @return The most recent visited location, or null if the user has not been located yet.
+	 */
 	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+		return visitedLocations.getLatest();
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
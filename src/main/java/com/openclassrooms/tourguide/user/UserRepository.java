@@ -0,0 +1,129 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe in-memory store of the users, indexed by userName and by userId.
+ * <p>
+ * Lookups go through {@link ConcurrentHashMap}s, whose lock-striped bins let controller threads,
+ * the Tracker and writers work concurrently. Users are also kept in an append-only array so the
+ * whole population can be walked, or viewed as a list, without copying it.
+ */
+public class UserRepository {
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private final Map<String, User> usersByName;
+	private final Map<UUID, User> usersById;
+	// append-only; a new array is published before the size that makes its extra slot visible
+	private volatile User[] users;
+	private volatile int size;
+
+	public UserRepository() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedUsers The number of users the repository is sized for; it grows past it as needed.
+	 */
+	public UserRepository(int expectedUsers) {
+		int capacity = Math.max(expectedUsers, 16);
+		usersByName = new ConcurrentHashMap<>(capacity);
+		usersById = new ConcurrentHashMap<>(capacity);
+		users = new User[capacity];
+	}
+
+	/**
+	 * Adds a user unless a user with the same userName is already stored.
+	 *
+	 * @param user The user to add.
+	 * @return true if the user was added.
+	 */
+	public boolean add(User user) {
+		if (usersByName.putIfAbsent(user.getUserName(), user) != null) {
+			return false;
+		}
+		usersById.put(user.getUserId(), user);
+		append(user);
+		return true;
+	}
+
+	public User getByName(String userName) {
+		return usersByName.get(userName);
+	}
+
+	public User getById(UUID userId) {
+		return usersById.get(userId);
+	}
+
+	public boolean contains(String userName) {
+		return usersByName.containsKey(userName);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Calls the action for every user stored when the iteration starts, without allocating.
+	 */
+	public void forEach(Consumer<User> action) {
+		int count = size;
+		User[] snapshot = users;
+		for (int i = 0; i < count; i++) {
+			action.accept(snapshot[i]);
+		}
+	}
+
+	/**
+	 * @return A read-only view of the users stored at the time of the call; later additions are not part of it.
+	 */
+	public List<User> getAllUsers() {
+		int count = size;
+		User[] snapshot = users;
+		return new Snapshot(snapshot, count);
+	}
+
+	private synchronized void append(User user) {
+		User[] current = users;
+		int count = size;
+		if (count == current.length) {
+			User[] grown = new User[count + (count >> 1)];
+			System.arraycopy(current, 0, grown, 0, count);
+			grown[count] = user;
+			users = grown;
+		} else {
+			current[count] = user;
+		}
+		size = count + 1;
+	}
+
+	private static class Snapshot extends AbstractList<User> implements RandomAccess {
+		private final User[] users;
+		private final int size;
+
+		Snapshot(User[] users, int size) {
+			this.users = users;
+			this.size = size;
+		}
+
+		@Override
+		public User get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return users[index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+}
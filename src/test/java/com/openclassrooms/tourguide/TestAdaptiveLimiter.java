@@ -0,0 +1,185 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.client.AdaptiveLimiter;
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The limiter runs against a simulated library: its calls are run one after the other on the test
+ * thread, each one advancing a fake clock by the latency the library would answer with given the
+ * calls in flight, so the outcome does not depend on timing or on the number of CPUs.
+ */
+public class TestAdaptiveLimiter {
+	private static final long SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	@Test
+	public void limitSettlesNearCapacity() {
+		// serves 4 calls at a time, the others wait inside it
+		Simulation simulation = new Simulation(new ClientProperties.Limit(4, 1, 64),
+				inFlight -> SERVICE_NANOS * Math.max(4, inFlight) / 4);
+
+		List<Integer> limits = simulation.run(5000);
+
+		// calls may get twice as slow as unloaded (8 in flight), plus the square root probing above that: about 11
+		for (int limit : limits.subList(limits.size() - 1000, limits.size())) {
+			assertTrue(limit >= 6 && limit <= 14, "limit " + limit);
+		}
+		simulation.assertAllCompleted();
+	}
+
+	@Test
+	public void limitGrowsWhileLatencyHolds() {
+		Simulation simulation = new Simulation(new ClientProperties.Limit(4, 1, 64), inFlight -> SERVICE_NANOS);
+
+		List<Integer> limits = simulation.run(2000);
+
+		assertEquals(64, limits.get(limits.size() - 1));
+		simulation.assertAllCompleted();
+	}
+
+	@Test
+	public void limitFollowsCapacityDrop() {
+		int[] capacity = { 16 };
+		Simulation simulation = new Simulation(new ClientProperties.Limit(4, 1, 64),
+				inFlight -> SERVICE_NANOS * Math.max(capacity[0], inFlight) / capacity[0]);
+
+		List<Integer> before = simulation.run(5000);
+		capacity[0] = 4;
+		List<Integer> after = simulation.run(5000);
+
+		assertTrue(before.get(before.size() - 1) > 24, "limit " + before.get(before.size() - 1));
+		assertTrue(after.get(after.size() - 1) <= 14, "limit " + after.get(after.size() - 1));
+		simulation.assertAllCompleted();
+	}
+
+	@Test
+	public void callerRunsOnceQueueIsFull() {
+		Deque<Runnable> tasks = new ArrayDeque<>();
+		ClientProperties.Limit limit = new ClientProperties.Limit(2, 2, 2);
+		limit.setQueueCapacity(3);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", tasks::add, limit, new TourGuideMetrics(registry));
+		Thread caller = Thread.currentThread();
+
+		List<CompletableFuture<Boolean>> results = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			results.add(limiter.call(() -> Thread.currentThread() == caller));
+		}
+
+		// 2 calls dispatched, 3 queued, the last one run right away by its caller
+		assertEquals(2, tasks.size());
+		assertEquals(3, limiter.getQueued());
+		assertTrue(results.get(5).join());
+		assertEquals(1, registry.get("tourguide.limiter.caller-runs").counter().count());
+		while (!tasks.isEmpty()) {
+			tasks.poll().run();
+		}
+		results.forEach(result -> assertTrue(result.isDone()));
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	public void queueHoldsFewRoundTripsOfTheLimit() {
+		Deque<Runnable> tasks = new ArrayDeque<>();
+		ClientProperties.Limit limit = new ClientProperties.Limit(2, 2, 2);
+		limit.setQueueRoundTrips(2);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", tasks::add, limit, new TourGuideMetrics(registry));
+
+		for (int i = 0; i < 7; i++) {
+			limiter.call(() -> null);
+		}
+
+		// far below the queue capacity, the queue only holds two round trips of 2 calls
+		assertEquals(2, tasks.size());
+		assertEquals(4, limiter.getQueued());
+		assertEquals(1, registry.get("tourguide.limiter.caller-runs").counter().count());
+	}
+
+	@Test
+	public void callerRunsDoNotHoldBackQueuedCalls() {
+		Deque<Runnable> tasks = new ArrayDeque<>();
+		ClientProperties.Limit limit = new ClientProperties.Limit(2, 2, 2);
+		limit.setQueueRoundTrips(1);
+		AdaptiveLimiter limiter = new AdaptiveLimiter("test", tasks::add, limit,
+				new TourGuideMetrics(new SimpleMeterRegistry()));
+		for (int i = 0; i < 4; i++) {
+			limiter.call(() -> null);
+		}
+		int[] dispatchedMeanwhile = { -1 };
+
+		// the queue is full: the caller runs its call, during which the 2 dispatched calls complete
+		limiter.call(() -> {
+			tasks.poll().run();
+			tasks.poll().run();
+			dispatchedMeanwhile[0] = tasks.size();
+			return null;
+		});
+
+		// both queued calls took the freed slots although the caller's call was still running
+		assertEquals(2, dispatchedMeanwhile[0]);
+		assertEquals(0, limiter.getQueued());
+		assertEquals(2, limiter.getInFlight());
+	}
+
+	private static class Simulation {
+		private final Deque<Runnable> tasks = new ArrayDeque<>();
+		private final long[] clock = { 0 };
+		private final AdaptiveLimiter limiter;
+		private final IntToLongFunction latency;
+		private final List<CompletableFuture<Integer>> results = new ArrayList<>();
+
+		Simulation(ClientProperties.Limit limit, IntToLongFunction latency) {
+			this.limiter = new AdaptiveLimiter("test", tasks::add, limit, new TourGuideMetrics(new SimpleMeterRegistry()),
+					() -> clock[0]);
+			this.latency = latency;
+		}
+
+		/**
+		 * Keeps callers waiting for the limit until the given number of calls is completed.
+		 *
+		 * @return The limit after each call.
+		 */
+		List<Integer> run(int calls) {
+			List<Integer> limits = new ArrayList<>();
+			int submitted = 0;
+			while (submitted < calls || !tasks.isEmpty()) {
+				while (submitted < calls && limiter.getQueued() == 0) {
+					int call = results.size();
+					results.add(limiter.call(() -> {
+						clock[0] += latency.applyAsLong(limiter.getInFlight());
+						return call;
+					}));
+					submitted++;
+				}
+				tasks.poll().run();
+				limits.add(limiter.getLimit());
+			}
+			return limits;
+		}
+
+		void assertAllCompleted() {
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(i, results.get(i).join());
+			}
+			assertEquals(0, limiter.getInFlight());
+			assertEquals(0, limiter.getQueued());
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.cache.CacheProperties;
+import com.openclassrooms.tourguide.cache.NearbyAttractionCache;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+
+public class TestAttractionIndex {
+
+	@Test
+	public void findNearestMatchesFullSort() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 200; i++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			List<Attraction> expected = attractionIndex.getAttractions().stream()
+					.sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+					.limit(5)
+					.collect(Collectors.toList());
+
+			List<Attraction> nearest = attractionIndex.findNearest(location, 5);
+
+			assertEquals(expected.stream().map(a -> a.attractionName).collect(Collectors.toList()),
+					nearest.stream().map(a -> a.attractionName).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void findWithinMatchesFullScan() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+		Random random = new Random(7);
+
+		for (int i = 0; i < 200; i++) {
+			Attraction origin = attractionIndex.getAttractions().get(random.nextInt(attractionIndex.size()));
+			Location location = new Location(origin.latitude + random.nextDouble() * 10 - 5,
+					origin.longitude + random.nextDouble() * 10 - 5);
+			double miles = random.nextDouble() * 1000;
+			Set<String> expected = attractionIndex.getAttractions().stream()
+					.filter(attraction -> rewardsService.getDistance(attraction, location) <= miles)
+					.map(attraction -> attraction.attractionName)
+					.collect(Collectors.toSet());
+
+			Set<String> within = attractionIndex.findWithin(location, miles).stream()
+					.map(attraction -> attraction.attractionName)
+					.collect(Collectors.toSet());
+
+			assertEquals(expected, within);
+		}
+	}
+
+	@Test
+	public void visitorDistancesMatchGetDistance() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+		Location location = new Location(33.817595, -117.922008);
+
+		attractionIndex.forEachNearest(location.latitude, location.longitude, attractionIndex.size(),
+				(attraction, distance) -> assertEquals(rewardsService.getDistance(attraction, location), distance, 1e-6));
+	}
+
+	@Test
+	public void nearbyCacheMatchesIndex() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+		NearbyAttractionCache nearbyAttractionCache = new NearbyAttractionCache(rewardsService.getAttractionCatalog(),
+				5, 2, new CacheProperties().getNearbyAttractions(), rewardsService.getMetrics());
+		Random random = new Random(11);
+
+		for (int i = 0; i < 500; i++) {
+			// clustered locations so that cells are reused
+			double latitude = random.nextInt(20) - 10 + random.nextDouble() * 4 + 30;
+			double longitude = random.nextInt(20) - 10 + random.nextDouble() * 4 - 100;
+			List<String> expected = new ArrayList<>();
+			attractionIndex.forEachNearest(latitude, longitude, 5, (attraction, distance) -> expected.add(attraction.attractionName));
+			List<String> nearest = new ArrayList<>();
+			nearbyAttractionCache.forEachNearest(latitude, longitude, (attraction, distance) -> {
+				assertEquals(rewardsService.getDistance(attraction, new Location(latitude, longitude)), distance, 1e-6);
+				nearest.add(attraction.attractionName);
+			});
+
+			assertEquals(expected, nearest);
+		}
+		assertTrue(nearbyAttractionCache.stats().hitCount() > 0);
+	}
+
+	@Test
+	public void refreshKeepsUnchangedAttractions() {
+		GpsUtil gpsUtil = new GpsUtil();
+		AttractionCatalog attractionCatalog = new AttractionCatalog(gpsUtil);
+		AttractionIndex before = attractionCatalog.getIndex();
+
+		boolean changed = attractionCatalog.refresh();
+
+		assertFalse(changed);
+		assertSame(before, attractionCatalog.getIndex());
+	}
+
+	@Test
+	public void findWithinUnboundedRangeReturnsAllAttractions() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		AttractionIndex attractionIndex = rewardsService.getAttractionIndex();
+
+		List<Attraction> within = attractionIndex.findWithin(new Location(0, 0), Integer.MAX_VALUE);
+
+		assertEquals(attractionIndex.size(), within.size());
+	}
+
+}
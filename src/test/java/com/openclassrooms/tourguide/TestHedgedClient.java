@@ -0,0 +1,185 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.client.ClientProperties;
+import com.openclassrooms.tourguide.client.HedgedClient;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TestHedgedClient {
+
+	@Test
+	public void callPastDeadlineTimesOut() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ClientProperties.Spec spec = new ClientProperties.Spec(Duration.ofMillis(100));
+		spec.setHedge(false);
+		HedgedClient client = new HedgedClient("test", executor, spec, new TourGuideMetrics(new SimpleMeterRegistry()));
+
+		long start = System.nanoTime();
+		CompletionException e = assertThrows(CompletionException.class, () -> client.call(() -> {
+			sleep(2000);
+			return "late";
+		}).join());
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		client.close();
+		executor.shutdownNow();
+
+		assertInstanceOf(TimeoutException.class, e.getCause());
+		assertTrue(elapsedMillis < 1000, "timed out after " + elapsedMillis + " ms");
+	}
+
+	@Test
+	public void slowCallIsHedged() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ClientProperties.Spec spec = new ClientProperties.Spec(Duration.ofSeconds(10));
+		spec.setMinHedgeDelay(Duration.ofMillis(10));
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		HedgedClient client = new HedgedClient("test", executor, spec, new TourGuideMetrics(registry));
+		for (int i = 0; i < 256; i++) {
+			client.call(() -> "fast").join();
+		}
+		assertNotNull(client.getHedgeDelay());
+
+		// the first attempt of the next call is stuck, its duplicate answers right away
+		AtomicInteger attempts = new AtomicInteger();
+		long start = System.nanoTime();
+		String answer = client.call(() -> {
+			if (attempts.incrementAndGet() == 1) {
+				sleep(5000);
+				return "first";
+			}
+			return "hedge";
+		}).join();
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		client.close();
+		executor.shutdownNow();
+
+		assertEquals("hedge", answer);
+		assertTrue(elapsedMillis < 1000, "answered after " + elapsedMillis + " ms");
+		assertEquals(1, registry.get("tourguide.client.hedges").counter().count());
+	}
+
+	@Test
+	public void callWaitingForLimitTimesOut() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ClientProperties.Spec spec = new ClientProperties.Spec(Duration.ofMillis(200), new ClientProperties.Limit(1, 1, 1));
+		spec.setHedge(false);
+		HedgedClient client = new HedgedClient("test", executor, spec, new TourGuideMetrics(new SimpleMeterRegistry()));
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+
+		// the first call holds the only slot, the second one waits behind it past its deadline
+		client.call(() -> {
+			await(release);
+			return "first";
+		});
+		long start = System.nanoTime();
+		CompletionException e = assertThrows(CompletionException.class, () -> client.call(() -> {
+			runs.incrementAndGet();
+			return "second";
+		}).join());
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		release.countDown();
+		client.close();
+		executor.shutdown();
+
+		assertInstanceOf(TimeoutException.class, e.getCause());
+		assertTrue(elapsedMillis < 1000, "timed out after " + elapsedMillis + " ms");
+		// the call that timed out in the queue is not run once its turn comes
+		assertTrue(awaitTermination(executor));
+		assertEquals(0, runs.get());
+	}
+
+	@Test
+	public void hedgeIsSkippedWhenHedgeThreadsAreBusy() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ClientProperties.Spec spec = new ClientProperties.Spec(Duration.ofSeconds(10));
+		spec.setMinHedgeDelay(Duration.ofMillis(10));
+		spec.setMaxConcurrentHedges(1);
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		HedgedClient client = new HedgedClient("test", executor, spec, new TourGuideMetrics(registry));
+		for (int i = 0; i < 256; i++) {
+			client.call(() -> "fast").join();
+		}
+		assertNotNull(client.getHedgeDelay());
+		CountDownLatch release = new CountDownLatch(1);
+
+		// both attempts of the first call are stuck, taking the only hedge thread
+		AtomicInteger firstAttempts = new AtomicInteger();
+		CompletableFuture<String> first = client.call(() -> {
+			firstAttempts.incrementAndGet();
+			await(release);
+			return "first";
+		});
+		awaitCount(registry, "tourguide.client.hedges", 1);
+		// so the second call is not hedged and answers with its own, slow, first attempt
+		AtomicInteger secondAttempts = new AtomicInteger();
+		CompletableFuture<String> second = client.call(() -> {
+			secondAttempts.incrementAndGet();
+			await(release);
+			return "second";
+		});
+		awaitCount(registry, "tourguide.client.hedges.skipped", 1);
+		release.countDown();
+
+		assertEquals("first", first.join());
+		assertEquals("second", second.join());
+		client.close();
+		executor.shutdownNow();
+		assertEquals(2, firstAttempts.get());
+		assertEquals(1, secondAttempts.get());
+		assertEquals(1, registry.get("tourguide.client.hedges").counter().count());
+	}
+
+	private static void awaitCount(SimpleMeterRegistry registry, String counter, double count) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (registry.get(counter).counter().count() < count) {
+			assertTrue(System.nanoTime() < deadline, counter + " never reached " + count);
+			sleep(5);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean awaitTermination(ExecutorService executor) {
+		try {
+			return executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.VisitedLocation;
+
+public class TestInternalUserGenerator {
+
+	@Test
+	public void sameSeedGeneratesSameUsers() {
+		long now = System.currentTimeMillis();
+		List<User> first = new InternalUserGenerator(42, 3, LocationRetention.DEFAULT, now).generate(1000);
+		List<User> second = new InternalUserGenerator(42, 3, LocationRetention.DEFAULT, now).generate(1000);
+
+		assertEquals(1000, first.size());
+		for (int i = 0; i < first.size(); i++) {
+			User expected = first.get(i);
+			User actual = second.get(i);
+			assertEquals("internalUser" + i, actual.getUserName());
+			assertEquals(expected.getUserId(), actual.getUserId());
+			for (int j = 0; j < 3; j++) {
+				VisitedLocation expectedLocation = expected.getVisitedLocations().get(j);
+				VisitedLocation actualLocation = actual.getVisitedLocations().get(j);
+				assertEquals(expectedLocation.location.latitude, actualLocation.location.latitude);
+				assertEquals(expectedLocation.location.longitude, actualLocation.location.longitude);
+				assertEquals(expectedLocation.timeVisited, actualLocation.timeVisited);
+			}
+		}
+		assertNotEquals(first.get(0).getUserId(),
+				new InternalUserGenerator(43, 3, LocationRetention.DEFAULT, now).generateUser(0).getUserId());
+	}
+
+	@Test
+	public void historyHasRequestedDepthWithinBounds() {
+		long now = System.currentTimeMillis();
+		InternalUserGenerator generator = new InternalUserGenerator(7, 10, LocationRetention.DEFAULT, now);
+
+		User user = generator.generateUser(5);
+
+		assertEquals(10, user.getVisitedLocationCount());
+		for (VisitedLocation visitedLocation : user.getVisitedLocations()) {
+			assertEquals(user.getUserId(), visitedLocation.userId);
+			assertTrue(Math.abs(visitedLocation.location.latitude) <= 85.05112878);
+			assertTrue(Math.abs(visitedLocation.location.longitude) <= 180);
+			long age = now - visitedLocation.timeVisited.getTime();
+			assertTrue(age >= 0 && age < TimeUnit.DAYS.toMillis(30));
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.tourguide.archive.MappedLocationArchive;
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+public class TestLocationArchive {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void droppedLocationsRemainInTheHistory() {
+		MappedLocationArchive archive = new MappedLocationArchive(directory, 16);
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new LocationRetention(5, Duration.ZERO, archive));
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com",
+				new LocationRetention(5, Duration.ZERO, archive));
+
+		for (int i = 0; i < 40; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i)));
+			user2.addToVisitedLocations(new VisitedLocation(user2.getUserId(), new Location(-i, -i), new Date(i)));
+		}
+
+		List<VisitedLocation> history = user.getVisitedLocationHistory();
+		assertEquals(5, user.getVisitedLocations().size());
+		assertEquals(70, archive.size());
+		assertEquals(40, history.size());
+		for (int i = 0; i < 40; i++) {
+			assertEquals(i, history.get(i).location.latitude);
+			assertEquals(i, history.get(i).timeVisited.getTime());
+		}
+		archive.close();
+	}
+
+	@Test
+	public void reopenedArchiveKeepsTheLocations() {
+		UUID userId = UUID.randomUUID();
+		MappedLocationArchive archive = new MappedLocationArchive(directory, 4);
+		for (int i = 0; i < 10; i++) {
+			archive.archive(userId, i, i, -i, i);
+			archive.archive(UUID.randomUUID(), 0, 0, 0, 0);
+		}
+		archive.close();
+
+		MappedLocationArchive reopened = new MappedLocationArchive(directory, 4);
+		reopened.archive(userId, 10, 10, -10, 10);
+		List<Long> sequences = new ArrayList<>();
+		reopened.forEach(userId, 8, (sequence, latitude, longitude, timeMillis) -> sequences.add(sequence));
+
+		assertEquals(21, reopened.size());
+		assertEquals(List.of(7L, 6L, 5L, 4L, 3L, 2L, 1L, 0L), sequences);
+		reopened.close();
+	}
+
+}
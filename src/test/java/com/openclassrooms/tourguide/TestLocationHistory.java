@@ -0,0 +1,116 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.user.LocationArchive;
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+public class TestLocationHistory {
+
+	@Test
+	public void keepsTheMostRecentLocations() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new LocationRetention(10, Duration.ZERO));
+
+		for (int i = 0; i < 25; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, -i), new Date()));
+		}
+
+		List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+		assertEquals(25, user.getVisitedLocationCount());
+		assertEquals(10, visitedLocations.size());
+		assertEquals(15, visitedLocations.get(0).location.latitude);
+		assertEquals(-24, visitedLocations.get(9).location.longitude);
+		assertEquals(user.getUserId(), visitedLocations.get(9).userId);
+	}
+
+	@Test
+	public void locationsSinceSkipLocationsOutOfRetention() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new LocationRetention(4, Duration.ZERO));
+
+		for (int i = 0; i < 6; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+
+		assertEquals(4, user.getVisitedLocationsSince(0).size());
+		assertEquals(2, user.getVisitedLocationsSince(4).size());
+		assertEquals(4, user.getVisitedLocationsSince(4).get(0).location.latitude);
+		assertEquals(1, user.getVisitedLocations(2, 3).size());
+		assertEquals(0, user.getVisitedLocationsSince(6).size());
+	}
+
+	@Test
+	public void dropsLocationsOlderThanTheRetentionAge() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new LocationRetention(100, Duration.ofHours(1)));
+		Date old = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 1), old));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(2, 2), old));
+		VisitedLocation recent = new VisitedLocation(user.getUserId(), new Location(3, 3), new Date());
+		user.addToVisitedLocations(recent);
+
+		assertEquals(1, user.getVisitedLocations().size());
+		assertEquals(recent.timeVisited, user.getVisitedLocations().get(0).timeVisited);
+		assertSame(recent, user.getLastVisitedLocation());
+	}
+
+	@Test
+	public void clearResetsTheHistory() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 1), new Date()));
+
+		user.clearVisitedLocations();
+
+		assertEquals(0, user.getVisitedLocationCount());
+		assertEquals(0, user.getVisitedLocations().size());
+		assertNull(user.getLastVisitedLocation());
+	}
+
+	@Test
+	public void droppedLocationsAreArchivedOutsideTheLock() {
+		List<Long> archived = new ArrayList<>();
+		User[] holder = new User[1];
+		LocationArchive archive = new LocationArchive() {
+			@Override
+			public void archive(UUID userId, long sequence, double latitude, double longitude, long timeMillis) {
+				// another thread reads the history meanwhile, which would wait for the write lock if it were held
+				long count = CompletableFuture.supplyAsync(holder[0]::getVisitedLocationCount)
+						.orTimeout(5, TimeUnit.SECONDS).join();
+				assertEquals(sequence + 5, count);
+				archived.add(sequence);
+			}
+
+			@Override
+			public void forEach(UUID userId, long beforeSequence, Visitor visitor) {
+			}
+		};
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+				new LocationRetention(4, Duration.ZERO, archive));
+		holder[0] = user;
+
+		for (int i = 0; i < 6; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+
+		assertEquals(List.of(0L, 1L), archived);
+	}
+
+}
@@ -52,6 +52,29 @@ public class TestPerformance {
 	    assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
 
+	@ParameterizedTest
+	@ValueSource(ints = {100, 1000, 5000, 10000, 50000, 100000})
+	public void highVolumeTrackLocations(int userNumber) {
+	    GpsUtil gpsUtil = new GpsUtil();
+	    RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+	    InternalTestHelper.setInternalUserNumber(userNumber);
+	    TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+	    List<User> allUsers = tourGuideService.getAllUsers();
+
+	    StopWatch stopWatch = new StopWatch();
+	    stopWatch.start();
+
+	    // Track every user with one batch request, locations and rewards being fetched concurrently
+	    tourGuideService.trackUserLocations(allUsers).join();
+
+	    stopWatch.stop();
+	    tourGuideService.tracker.stopTracking();
+
+	    System.out.println("highVolumeTrackLocations: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
+	    assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	}
+
 
 
 	@ParameterizedTest
@@ -82,4 +105,34 @@ public class TestPerformance {
 	    assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
 	}
 
-}
\ No newline at end of file
+
+	@ParameterizedTest
+	@ValueSource(ints = {100, 1000, 10000, 100000})
+	public void highVolumeGetRewardsInBulk(int userNumber) {
+	    GpsUtil gpsUtil = new GpsUtil();
+	    RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+	    InternalTestHelper.setInternalUserNumber(userNumber);
+	    StopWatch stopWatch = new StopWatch();
+	    stopWatch.start();
+	    TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+	    Attraction attraction = gpsUtil.getAttractions().get(0);
+	    List<User> allUsers = tourGuideService.getAllUsers();
+
+	    allUsers.forEach(u -> u.addToVisitedLocations(new VisitedLocation(u.getUserId(), attraction, new Date())));
+
+	    // Calculate every user's rewards with one bulk request
+	    rewardsService.calculateRewards(allUsers);
+
+	    allUsers.forEach(user -> assertTrue(user.getUserRewards().size() > 0));
+
+	    stopWatch.stop();
+	    tourGuideService.tracker.stopTracking();
+
+	    System.out.println("highVolumeGetRewardsInBulk: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
+	            + " seconds.");
+	    assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	}
+
+}
@@ -0,0 +1,149 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
+import com.openclassrooms.tourguide.pipeline.PipelineProperties;
+import com.openclassrooms.tourguide.pipeline.RingBufferRewardPipeline;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import rewardCentral.RewardCentral;
+
+public class TestRewardPipeline {
+
+	@Test
+	public void publishedUsersAreRewarded() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+		PipelineProperties properties = new PipelineProperties();
+		// a small buffer makes publishers wait for the consumers
+		properties.setBufferSize(8);
+		properties.setBatchSize(4);
+		RingBufferRewardPipeline pipeline = new RingBufferRewardPipeline(rewardsService, properties,
+				new TourGuideMetrics(new SimpleMeterRegistry()));
+
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(i % attractions.size()), new Date()));
+			users.add(user);
+		}
+		List<CompletableFuture<List<UserReward>>> results = IntStream.range(0, users.size()).parallel()
+				.mapToObj(i -> pipeline.publish(users.get(i))).toList();
+		CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+		pipeline.close();
+
+		for (int i = 0; i < users.size(); i++) {
+			User user = users.get(i);
+			assertTrue(user.hasUserReward(attractions.get(i % attractions.size()).attractionName));
+			assertEquals(user.getUserRewardCount(), results.get(i).join().size());
+		}
+	}
+
+	@Test
+	public void rewardsAreReportedOncePerUser() {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		RingBufferRewardPipeline pipeline = new RingBufferRewardPipeline(rewardsService, new PipelineProperties(),
+				new TourGuideMetrics(new SimpleMeterRegistry()));
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		CompletableFuture<List<UserReward>> first = pipeline.publish(user);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		CompletableFuture<List<UserReward>> second = pipeline.publish(user);
+		pipeline.close();
+
+		assertEquals(1, first.join().size() + second.join().size());
+		assertEquals(1, user.getUserRewardCount());
+	}
+
+	@Test
+	public void idleConsumersWaitForPublication() throws Exception {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		RingBufferRewardPipeline pipeline = new RingBufferRewardPipeline(rewardsService, new PipelineProperties(),
+				new TourGuideMetrics(new SimpleMeterRegistry()));
+
+		// parked without a timeout, rather than polling the empty buffer
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!consumerStates().stream().allMatch(state -> state == Thread.State.WAITING)) {
+			assertTrue(System.nanoTime() < deadline, "consumers " + consumerStates());
+			Thread.sleep(10);
+		}
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		List<UserReward> userRewards = pipeline.publish(user).get(5, TimeUnit.SECONDS);
+		pipeline.close();
+
+		assertEquals(1, userRewards.size());
+	}
+
+	@Test
+	public void publishingRacingCloseNeverHangs() throws Exception {
+		RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		PipelineProperties properties = new PipelineProperties();
+		properties.setBufferSize(8);
+		RingBufferRewardPipeline pipeline = new RingBufferRewardPipeline(rewardsService, properties,
+				new TourGuideMetrics(new SimpleMeterRegistry()));
+
+		List<CompletableFuture<List<UserReward>>> results = new CopyOnWriteArrayList<>();
+		ExecutorService publishers = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 4; i++) {
+			publishers.execute(() -> {
+				for (int j = 0; j < 200; j++) {
+					User user = new User(UUID.randomUUID(), "user" + j, "000", "user" + j + "@tourGuide.com");
+					user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+					results.add(pipeline.publish(user));
+				}
+			});
+		}
+		Thread.sleep(20);
+		pipeline.close();
+		publishers.shutdown();
+		assertTrue(publishers.awaitTermination(30, TimeUnit.SECONDS));
+
+		// every user is either rewarded or refused
+		CompletableFuture.allOf(results.stream().map(result -> result.handle((userRewards, e) -> {
+			assertTrue(e == null || e instanceof IllegalStateException, String.valueOf(e));
+			return null;
+		})).toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+		assertEquals(800, results.size());
+
+		User late = new User(UUID.randomUUID(), "late", "000", "late@tourGuide.com");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> pipeline.publish(late).get());
+		assertInstanceOf(IllegalStateException.class, e.getCause());
+	}
+
+	private static List<Thread.State> consumerStates() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().startsWith("reward-pipeline-") && thread.isAlive())
+				.map(Thread::getState)
+				.toList();
+	}
+
+}
@@ -1,14 +1,19 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
 import org.junit.jupiter.api.Test;
 
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
@@ -39,6 +44,71 @@ public class TestRewardsService {
 		assertTrue(userRewards.size() == 1);
 	}
 
+	@Test
+	public void rewardTotalsFollowAddedRewards() {
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = new GpsUtil().getAttractions();
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), attractions.get(0), new Date());
+		Collection<UserReward> userRewardView = user.getUserRewardView();
+
+		assertTrue(user.addUserReward(new UserReward(visitedLocation, attractions.get(0), 100)));
+		assertTrue(user.addUserReward(new UserReward(visitedLocation, attractions.get(1), 250)));
+		assertFalse(user.addUserReward(new UserReward(visitedLocation, attractions.get(0), 1000)));
+
+		assertEquals(350, user.getRewardPointsTotal());
+		assertEquals(2, user.getUserRewardCount());
+		assertEquals(2, userRewardView.size());
+		assertThrows(UnsupportedOperationException.class, () -> userRewardView.clear());
+	}
+
+	@Test
+	public void userGetRewardsOnlyForNewLocations() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+		rewardsService.calculateRewards(user);
+		assertEquals(1, user.getEvaluatedLocationCount());
+		int rewardCount = user.getUserRewards().size();
+
+		// a wider buffer does not apply to locations already evaluated
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.calculateRewards(user);
+		assertEquals(rewardCount, user.getUserRewards().size());
+
+		rewardsService.setDefaultProximityBuffer();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(1), new Date()));
+		rewardsService.calculateRewards(user);
+
+		assertEquals(2, user.getEvaluatedLocationCount());
+		assertTrue(user.hasUserReward(attractions.get(0).attractionName));
+		assertTrue(user.hasUserReward(attractions.get(1).attractionName));
+	}
+
+	@Test
+	public void bulkCalculationRewardsEveryUser() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		List<Attraction> attractions = rewardsService.getAttractionIndex().getAttractions();
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			User user = new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com");
+			Attraction attraction = attractions.get(i % attractions.size());
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+			users.add(user);
+		}
+
+		rewardsService.calculateRewards(users);
+
+		for (int i = 0; i < users.size(); i++) {
+			User user = users.get(i);
+			assertEquals(1, user.getEvaluatedLocationCount());
+			assertTrue(user.hasUserReward(attractions.get(i % attractions.size()).attractionName));
+		}
+	}
+
 	@Test
 	public void isWithinAttractionProximity() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -47,6 +117,21 @@ public class TestRewardsService {
 		assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
 	}
 
+	@Test
+	public void rewardPointsAreCached() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		RewardPointsCache rewardPointsCache = rewardsService.getRewardPointsCache();
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		UUID userId = UUID.randomUUID();
+
+		int rewardPoints = rewardPointsCache.getRewardPoints(attraction.attractionId, userId);
+
+		assertEquals(rewardPoints, rewardPointsCache.getRewardPoints(attraction.attractionId, userId));
+		assertEquals(1, rewardPointsCache.stats().missCount());
+		assertEquals(1, rewardPointsCache.stats().hitCount());
+	}
+
 	@Test
 	public void nearAllAttractions() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -57,7 +142,7 @@ public class TestRewardsService {
 		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
 		rewardsService.calculateRewards(tourGuideService.getAllUsers().get(0));
-		List<UserReward> userRewards = tourGuideService.getUserRewards(tourGuideService.getAllUsers().get(0));
+		Collection<UserReward> userRewards = tourGuideService.getUserRewards(tourGuideService.getAllUsers().get(0));
 		tourGuideService.tracker.stopTracking();
 
 		assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
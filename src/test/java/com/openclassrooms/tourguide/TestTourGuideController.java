@@ -0,0 +1,302 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.openclassrooms.tourguide.attraction.NearbyAttraction;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrackingListener;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Runs the controller against a mocked service. Streamed responses are written from a queue of tasks
+ * run on the test thread, standing for the streaming executor.
+ */
+public class TestTourGuideController {
+	private static final String COMPACT_REWARD = "{\"attractionName\":\"Disneyland\",\"rewardPoints\":100,"
+			+ "\"latitude\":33.0,\"longitude\":-117.0,\"timeVisited\":1000}";
+	private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+	private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+	private final TourGuideService tourGuideService = mock(TourGuideService.class);
+	private final Deque<Runnable> streamingTasks = new ArrayDeque<>();
+	private final User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	public void setUp() {
+		TourGuideController controller = new TourGuideController();
+		controller.tourGuideService = tourGuideService;
+		controller.streamingExecutor = streamingTasks::add;
+		mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+		when(tourGuideService.getUser("jon")).thenReturn(user);
+	}
+
+	@Test
+	public void trackingEventsOfUnknownUserAreNotFound() throws Exception {
+		mockMvc.perform(get("/getTrackingEvents").param("userName", "nobody")).andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void trackingEventsAreWrittenOffTheTrackingThread() throws Exception {
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1.0, 2.0), new Date()));
+		AtomicReference<TrackingListener> listener = new AtomicReference<>();
+		when(tourGuideService.addTrackingListener(eq(user), any())).thenAnswer(invocation -> {
+			listener.set(invocation.getArgument(1));
+			return (Runnable) () -> listener.set(null);
+		});
+
+		MvcResult result = mockMvc.perform(get("/getTrackingEvents").param("userName", "jon"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		listener.get().locationRecorded(user,
+				new VisitedLocation(user.getUserId(), new Location(3.0, 4.0), new Date()));
+
+		// queued by the listener, written once the streaming executor gets to them
+		assertEquals("", result.getResponse().getContentAsString());
+		runStreamingTasks();
+		String events = result.getResponse().getContentAsString();
+		assertEquals(2, events.split("event:location").length - 1, events);
+		assertTrue(events.contains("\"latitude\":3.0"), events);
+	}
+
+	@Test
+	public void slowClientHasItsTrackingEventsCompleted() throws Exception {
+		AtomicReference<TrackingListener> listener = new AtomicReference<>();
+		AtomicBoolean removed = new AtomicBoolean();
+		when(tourGuideService.addTrackingListener(eq(user), any())).thenAnswer(invocation -> {
+			listener.set(invocation.getArgument(1));
+			return (Runnable) () -> removed.set(true);
+		});
+
+		MvcResult result = mockMvc.perform(get("/getTrackingEvents").param("userName", "jon"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		// nothing is written while more events than the stream holds come in
+		for (int i = 0; i < 300; i++) {
+			listener.get().locationRecorded(user,
+					new VisitedLocation(user.getUserId(), new Location(i, i), new Date()));
+		}
+		runStreamingTasks();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+
+		assertFalse(result.getResponse().getContentAsString().contains("event:location"));
+		assertTrue(removed.get());
+	}
+
+	@Test
+	public void batchLinesAreWrittenOffTheQueryThreads() throws Exception {
+		CompletableFuture<VisitedLocation> location = new CompletableFuture<>();
+		when(tourGuideService.getUserLocationAsync(user)).thenReturn(location);
+
+		MvcResult result = mockMvc.perform(get("/getLocations").param("userNames", "jon,nobody"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		location.complete(new VisitedLocation(user.getUserId(), new Location(1.0, 2.0), new Date()));
+
+		// the lines are only queued by the threads answering the queries
+		assertEquals("", result.getResponse().getContentAsString());
+		runStreamingTasks();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+		String[] lines = result.getResponse().getContentAsString().split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("{\"userName\":\"nobody\",\"error\":\"Unknown user\"}", lines[0]);
+		assertTrue(lines[1].startsWith("{\"userName\":\"jon\""), lines[1]);
+	}
+
+	@Test
+	public void rewardsOfOneUser() throws Exception {
+		givenRewards();
+
+		String rewards = mockMvc.perform(get("/getRewards").param("userName", "jon"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		assertTrue(rewards.startsWith("[{\"visitedLocation\":"), rewards);
+		assertTrue(rewards.contains("\"attractionName\":\"Disneyland\""), rewards);
+	}
+
+	@Test
+	public void compactRewardsOfOneUser() throws Exception {
+		givenRewards();
+
+		String rewards = mockMvc.perform(get("/getRewards").param("userName", "jon").param("compact", "true"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+
+		assertEquals("[" + COMPACT_REWARD + "]", rewards);
+	}
+
+	@Test
+	public void compactLocationAsCbor() throws Exception {
+		when(tourGuideService.getUserLocationAsync(user)).thenReturn(CompletableFuture.completedFuture(
+				new VisitedLocation(user.getUserId(), new Location(1.0, 2.0), new Date(1000))));
+
+		MvcResult result = mockMvc.perform(get("/getLocation").param("userName", "jon").param("compact", "true")
+				.accept(CBOR))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		byte[] body = mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(CBOR))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		JsonNode location = new CBORMapper().readTree(body);
+		assertEquals(Set.of("latitude", "longitude", "timeVisited"), fieldNames(location));
+		assertEquals(1.0, location.get("latitude").asDouble());
+		assertEquals(2.0, location.get("longitude").asDouble());
+		assertEquals(1000, location.get("timeVisited").asLong());
+	}
+
+	@Test
+	public void compactRewardsAsSmile() throws Exception {
+		givenRewards();
+
+		byte[] body = mockMvc.perform(get("/getRewards").param("userName", "jon").param("compact", "true")
+				.accept(SMILE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(SMILE))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		JsonNode rewards = new SmileMapper().readTree(body);
+		assertEquals(1, rewards.size());
+		JsonNode reward = rewards.get(0);
+		assertEquals(Set.of("attractionName", "rewardPoints", "latitude", "longitude", "timeVisited"),
+				fieldNames(reward));
+		assertEquals("Disneyland", reward.get("attractionName").asText());
+		assertEquals(100, reward.get("rewardPoints").asInt());
+		assertEquals(33.0, reward.get("latitude").asDouble());
+		assertEquals(-117.0, reward.get("longitude").asDouble());
+		assertEquals(1000, reward.get("timeVisited").asLong());
+	}
+
+	@Test
+	public void rewardsOfManyUsersAreStreamed() throws Exception {
+		givenRewards();
+		when(tourGuideService.getUser(user.getUserId())).thenReturn(user);
+
+		List<String> lines = streamedLines(mockMvc.perform(get("/getRewards")
+				.param("userNames", "jon,nobody").param("userIds", user.getUserId().toString())));
+
+		// in completion order, which is the request order here since every answer is ready
+		assertEquals(3, lines.size());
+		assertEquals("{\"userName\":\"nobody\",\"error\":\"Unknown user\"}", lines.get(1));
+		for (String line : List.of(lines.get(0), lines.get(2))) {
+			assertTrue(line.startsWith("{\"userName\":\"jon\",\"userId\":\"" + user.getUserId()
+					+ "\",\"result\":[{\"visitedLocation\":"), line);
+		}
+	}
+
+	@Test
+	public void compactRewardsOfManyUsersAreStreamed() throws Exception {
+		givenRewards();
+
+		// the batch parameters take precedence over compact, which applies to each line
+		List<String> lines = streamedLines(mockMvc.perform(get("/getRewards")
+				.param("userNames", "jon").param("compact", "true")));
+
+		assertEquals(List.of("{\"userName\":\"jon\",\"userId\":\"" + user.getUserId() + "\",\"result\":["
+				+ COMPACT_REWARD + "]}"), lines);
+	}
+
+	@Test
+	public void compactLocationsOfManyUsersAreStreamed() throws Exception {
+		when(tourGuideService.getUser(user.getUserId())).thenReturn(user);
+		when(tourGuideService.getUserLocationAsync(user)).thenReturn(CompletableFuture.completedFuture(
+				new VisitedLocation(user.getUserId(), new Location(1.0, 2.0), new Date(1000))));
+
+		List<String> lines = streamedLines(mockMvc.perform(get("/getLocations")
+				.param("userIds", user.getUserId().toString()).param("compact", "true")));
+
+		assertEquals(List.of("{\"userName\":\"jon\",\"userId\":\"" + user.getUserId()
+				+ "\",\"result\":{\"latitude\":1.0,\"longitude\":2.0,\"timeVisited\":1000}}"), lines);
+	}
+
+	@Test
+	public void nearbyAttractionsOfOneOrManyUsers() throws Exception {
+		when(tourGuideService.getNearByAttractionsAsync(user)).thenReturn(CompletableFuture.completedFuture(
+				List.of(new NearbyAttraction("Disneyland", 33.8, -117.9, 33.0, -117.0, 50.0, 100))));
+
+		MvcResult single = mockMvc.perform(get("/getNearbyAttractions").param("userName", "jon"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String attractions = mockMvc.perform(asyncDispatch(single))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		List<String> lines = streamedLines(mockMvc.perform(get("/getNearbyAttractions").param("userNames", "jon")));
+
+		assertTrue(attractions.startsWith("[{\"name\":\"Disneyland\""), attractions);
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0).startsWith("{\"userName\":\"jon\",\"userId\":\"" + user.getUserId()
+				+ "\",\"result\":[{\"name\":\"Disneyland\""), lines.get(0));
+	}
+
+	private static Set<String> fieldNames(JsonNode node) {
+		Set<String> fieldNames = new HashSet<>();
+		node.fieldNames().forEachRemaining(fieldNames::add);
+		return fieldNames;
+	}
+
+	private void givenRewards() {
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(33.0, -117.0),
+				new Date(1000));
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		when(tourGuideService.getUserRewards(user)).thenReturn(List.of(new UserReward(visitedLocation, attraction, 100)));
+	}
+
+	/**
+	 * Writes the batch response and returns its lines.
+	 */
+	private List<String> streamedLines(ResultActions actions) throws Exception {
+		MvcResult result = actions.andExpect(request().asyncStarted()).andReturn();
+		runStreamingTasks();
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_NDJSON));
+		return List.of(result.getResponse().getContentAsString().split("\n"));
+	}
+
+	private void runStreamingTasks() {
+		while (!streamingTasks.isEmpty()) {
+			streamingTasks.poll().run();
+		}
+	}
+
+}
@@ -1,21 +1,37 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import org.junit.jupiter.api.Test;
 
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.NearbyAttraction;
+import com.openclassrooms.tourguide.cache.CacheProperties;
+import com.openclassrooms.tourguide.cache.RewardPointsCache;
+import com.openclassrooms.tourguide.executor.ExecutorProperties;
+import com.openclassrooms.tourguide.executor.TrackingExecutors;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.metrics.TourGuideMetrics;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrackingListener;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
 
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import rewardCentral.RewardCentral;
 import tripPricer.Provider;
 
@@ -92,6 +108,121 @@ public class TestTourGuideService {
 		assertEquals(user.getUserId(), visitedLocation.userId);
 	}
 
+	@Test
+	public void trackUserAsync() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		CompletableFuture<VisitedLocation> future = tourGuideService.trackUserLocationAsync(user);
+		VisitedLocation visitedLocation = future.join();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(user.getUserId(), visitedLocation.userId);
+		assertEquals(visitedLocation, user.getLastVisitedLocation());
+	}
+
+	@Test
+	public void trackUsersInBatch() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		User user2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+		tourGuideService.trackUserLocations(List.of(user, user2)).join();
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(user.getUserId(), user.getLastVisitedLocation().userId);
+		assertEquals(user2.getUserId(), user2.getLastVisitedLocation().userId);
+	}
+
+	@Test
+	public void trackUserRecordsMetrics() {
+		GpsUtil gpsUtil = new GpsUtil();
+		ExecutorService executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+		TourGuideMetrics metrics = new TourGuideMetrics(new SimpleMeterRegistry());
+		RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil),
+				new RewardPointsCache(new RewardCentral(), executor, new CacheProperties().getRewardPoints(), metrics),
+				executor, metrics);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.trackUserLocation(user);
+		tourGuideService.getTripDeals(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(1, metrics.getGpsLocationTimer().count());
+		assertEquals(1, metrics.getRewardCalculationTimer().count());
+		assertEquals(1, metrics.getTripPricerTimer().count());
+	}
+
+	@Test
+	public void tripDealsAreCachedPerPreferences() {
+		GpsUtil gpsUtil = new GpsUtil();
+		ExecutorService executor = TrackingExecutors.newExecutor(new ExecutorProperties());
+		TourGuideMetrics metrics = new TourGuideMetrics(new SimpleMeterRegistry());
+		RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil),
+				new RewardPointsCache(new RewardCentral(), executor, new CacheProperties().getRewardPoints(), metrics),
+				executor, metrics);
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		List<Provider> first = tourGuideService.getTripDeals(user);
+		List<Provider> second = tourGuideService.getTripDeals(user);
+		user.getUserPreferences().setNumberOfChildren(2);
+		List<Provider> third = tourGuideService.getTripDeals(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertSame(first, second);
+		assertNotSame(first, third);
+		assertSame(third, user.getTripDeals());
+		assertEquals(2, metrics.getTripPricerTimer().count());
+	}
+
+	@Test
+	public void trackingListenerIsNotifiedUntilRemoved() {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction attraction = rewardsService.getAttractionIndex().getAttractions().get(0);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+		List<VisitedLocation> locations = new CopyOnWriteArrayList<>();
+		List<UserReward> rewards = new CopyOnWriteArrayList<>();
+		Runnable removeListener = tourGuideService.addTrackingListener(user, new TrackingListener() {
+			@Override
+			public void locationRecorded(User user, VisitedLocation visitedLocation) {
+				locations.add(visitedLocation);
+			}
+
+			@Override
+			public void rewardsAdded(User user, List<UserReward> userRewards) {
+				rewards.addAll(userRewards);
+			}
+		});
+
+		VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
+		removeListener.run();
+		tourGuideService.trackUserLocation(user);
+
+		tourGuideService.tracker.stopTracking();
+
+		assertEquals(List.of(visitedLocation), locations);
+		assertEquals(attraction.attractionName, rewards.get(0).attraction.attractionName);
+	}
+
 	@Test
 	public void getNearbyAttractions() {
 		GpsUtil gpsUtil = new GpsUtil();
@@ -100,7 +231,7 @@ public class TestTourGuideService {
 		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
 
 		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
-		List<Map<String, Object>> attractions = tourGuideService.getNearByAttractions(user);
+		List<NearbyAttraction> attractions = tourGuideService.getNearByAttractions(user);
 
 		tourGuideService.tracker.stopTracking();
 
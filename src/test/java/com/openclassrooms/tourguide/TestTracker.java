@@ -0,0 +1,121 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.service.TrackingListener;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+
+public class TestTracker {
+
+	@Test
+	public void trackerTracksAddedUser() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		tourGuideService.addUser(user);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (user.getVisitedLocations().isEmpty() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(50);
+		}
+
+		tourGuideService.tracker.stopTracking();
+
+		assertFalse(user.getVisitedLocations().isEmpty());
+		assertEquals(user.getUserId(), user.getLastVisitedLocation().userId);
+	}
+
+	@Test
+	public void trackerSpreadsUsersOverTheInterval() throws InterruptedException {
+		GpsUtil gpsUtil = new GpsUtil();
+		RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+		InternalTestHelper.setInternalUserNumber(0);
+		TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService);
+		tourGuideService.tracker.stopTracking();
+		for (int i = 0; i < 1000; i++) {
+			tourGuideService.addUser(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+		}
+		// the order the tracker spreads the users in
+		List<User> users = tourGuideService.getAllUsers();
+
+		// the schedule follows a clock that only moves when told to
+		AtomicLong clock = new AtomicLong();
+		Tracker tracker = new Tracker(tourGuideService, rewardsService.getMetrics(), clock::get);
+
+		// 1000 users over 5 minutes, one every 300 ms: the first batch window of 1 second holds 4 of them
+		awaitLocated(tourGuideService, users.subList(0, 4));
+		awaitNothingInFlight(tracker);
+		assertEquals(4, countLocated(users));
+
+		// 30 seconds later, the users due within 31 seconds
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		awaitLocated(tourGuideService, users.subList(4, 104));
+		tracker.stopTracking();
+		tracker.join(TimeUnit.SECONDS.toMillis(10));
+		awaitNothingInFlight(tracker);
+		assertEquals(104, countLocated(users));
+	}
+
+	private static long countLocated(List<User> users) {
+		return users.stream().filter(user -> !user.getVisitedLocations().isEmpty()).count();
+	}
+
+	private static void awaitLocated(TourGuideService tourGuideService, List<User> users) throws InterruptedException {
+		Set<User> located = ConcurrentHashMap.newKeySet();
+		CountDownLatch allLocated = new CountDownLatch(users.size());
+		List<Runnable> listeners = new ArrayList<>();
+		for (User user : users) {
+			listeners.add(tourGuideService.addTrackingListener(user, new TrackingListener() {
+				@Override
+				public void locationRecorded(User user, VisitedLocation visitedLocation) {
+					if (located.add(user)) {
+						allLocated.countDown();
+					}
+				}
+
+				@Override
+				public void rewardsAdded(User user, List<UserReward> userRewards) {
+				}
+			}));
+			// located before the listener was added
+			if (!user.getVisitedLocations().isEmpty() && located.add(user)) {
+				allLocated.countDown();
+			}
+		}
+		assertTrue(allLocated.await(10, TimeUnit.SECONDS), allLocated.getCount() + " users not located");
+		listeners.forEach(Runnable::run);
+	}
+
+	private static void awaitNothingInFlight(Tracker tracker) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (tracker.getUsersInFlight() > 0) {
+			assertTrue(System.nanoTime() < deadline, tracker.getUsersInFlight() + " users in flight");
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+	}
+
+}
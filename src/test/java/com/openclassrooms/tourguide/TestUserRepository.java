@@ -0,0 +1,60 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRepository;
+
+public class TestUserRepository {
+
+	@Test
+	public void lookupByNameAndId() {
+		UserRepository userRepository = new UserRepository();
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		assertTrue(userRepository.add(user));
+		assertFalse(userRepository.add(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com")));
+
+		assertSame(user, userRepository.getByName("jon"));
+		assertSame(user, userRepository.getById(user.getUserId()));
+		assertEquals(1, userRepository.size());
+	}
+
+	@Test
+	public void concurrentAddsAreAllVisible() {
+		UserRepository userRepository = new UserRepository(16);
+
+		IntStream.range(0, 10_000).parallel().forEach(i ->
+				userRepository.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com")));
+
+		List<User> allUsers = userRepository.getAllUsers();
+		Set<String> userNames = new HashSet<>();
+		userRepository.forEach(user -> userNames.add(user.getUserName()));
+		assertEquals(10_000, allUsers.size());
+		assertEquals(10_000, userNames.size());
+	}
+
+	@Test
+	public void snapshotIgnoresLaterAdditions() {
+		UserRepository userRepository = new UserRepository();
+		userRepository.add(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com"));
+
+		List<User> allUsers = userRepository.getAllUsers();
+		userRepository.add(new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com"));
+
+		assertEquals(1, allUsers.size());
+		assertEquals(2, userRepository.getAllUsers().size());
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.openclassrooms.tourguide.persistence.LogUserStore;
+import com.openclassrooms.tourguide.user.LocationRetention;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRepository;
+import com.openclassrooms.tourguide.user.UserReward;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+public class TestUserStore {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void changesAreReplayedFromTheLog() {
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		LogUserStore userStore = newStore();
+		userStore.open(new UserRepository(), LocationRetention.DEFAULT, name -> null);
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		user.getUserPreferences().setNumberOfAdults(2);
+		userStore.userAdded(user);
+		for (int i = 0; i < 3; i++) {
+			VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(i, i), new Date(i));
+			userStore.locationAdded(user, user.addToVisitedLocations(visitedLocation), visitedLocation);
+		}
+		UserReward userReward = new UserReward(user.getLastVisitedLocation(), attraction, 42);
+		user.addUserReward(userReward);
+		user.markLocationsEvaluated(3);
+		userStore.rewardsAdded(user, List.of(userReward));
+		userStore.close();
+
+		UserRepository users = new UserRepository();
+		LogUserStore reopened = newStore();
+		int loaded = reopened.open(users, LocationRetention.DEFAULT, name -> attraction);
+		reopened.close();
+
+		User restored = users.getByName("jon");
+		assertEquals(1, loaded);
+		assertNotNull(restored);
+		assertEquals(user.getUserId(), restored.getUserId());
+		assertEquals(2, restored.getUserPreferences().getNumberOfAdults());
+		assertEquals(3, restored.getVisitedLocationCount());
+		assertEquals(3, restored.getEvaluatedLocationCount());
+		assertEquals(2, restored.getLastVisitedLocation().location.latitude);
+		assertEquals(42, restored.getUserRewards().get(0).getRewardPoints());
+		assertTrue(restored.hasUserReward("Disneyland"));
+	}
+
+	@Test
+	public void snapshotAndLaterChangesAreLoaded() throws InterruptedException {
+		UserRepository users = new UserRepository();
+		LogUserStore userStore = newStore();
+		userStore.open(users, LocationRetention.DEFAULT, name -> null);
+		for (int i = 0; i < 1000; i++) {
+			User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i % 90, 0), new Date()));
+			users.add(user);
+		}
+		userStore.requestSnapshot();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!directory.resolve("snapshot-0000000002.bin").toFile().exists() && System.nanoTime() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(20);
+		}
+
+		// a location added after the snapshot is only in the log
+		User user = users.getByName("internalUser7");
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(45, 45), new Date());
+		userStore.locationAdded(user, user.addToVisitedLocations(visitedLocation), visitedLocation);
+		userStore.close();
+
+		UserRepository reloaded = new UserRepository();
+		LogUserStore reopened = newStore();
+		int loaded = reopened.open(reloaded, LocationRetention.DEFAULT, name -> null);
+		reopened.close();
+
+		assertEquals(1000, loaded);
+		assertEquals(2, reloaded.getByName("internalUser7").getVisitedLocations().size());
+		assertEquals(45, reloaded.getByName("internalUser7").getLastVisitedLocation().location.latitude);
+		assertEquals(1, reloaded.getByName("internalUser8").getVisitedLocations().size());
+	}
+
+	private LogUserStore newStore() {
+		return new LogUserStore(directory, TimeUnit.MINUTES.toMillis(10), 10_000, 1000, false);
+	}
+
+}